@@ -0,0 +1,151 @@
+package atlas.application;
+
+import atlas.controller.HeadlessRunner;
+import atlas.model.Model;
+import atlas.model.rules.Algorithm;
+import atlas.model.rules.AlgorithmBarnesHut;
+import atlas.model.rules.AlgorithmBruteForce;
+import atlas.model.rules.AlgorithmFastMultipole;
+import atlas.model.rules.AlgorithmKepler;
+import atlas.model.rules.AlgorithmTwoBody;
+import atlas.model.rules.Integrator;
+import atlas.model.rules.IntegratorBlockSteps;
+import atlas.model.rules.IntegratorEuler;
+import atlas.model.rules.IntegratorLeapfrog;
+import atlas.model.rules.IntegratorYoshida;
+import atlas.utils.Units;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ *
+ * This class contains the main method that runs a simulation without the
+ * view, for the machines without a display.
+ *
+ */
+public class HeadlessLauncher {
+
+    private static final String USAGE = "usage: HeadlessLauncher (--save <file> | --scenario solar | --scenario rings:<n>)"
+            + " --duration <days> [--step <seconds>] [--algorithm bruteforce|twobody|barneshut|fmm|kepler]"
+            + " [--integrator euler|leapfrog|yoshida|blocksteps] [--states <file>]";
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Invalid argument");
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException {
+        Model model = null;
+        double duration = -1;
+        Double step = null;
+        Algorithm algorithm = null;
+        Integrator integrator = null;
+        String states = null;
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            switch (args[i++]) {
+            case "--save":
+                model = HeadlessRunner.loadSave(value);
+                break;
+            case "--scenario":
+                model = scenario(value);
+                break;
+            case "--duration":
+                duration = Double.parseDouble(value) * Units.DAY_SEC.getValue();
+                break;
+            case "--step":
+                step = Double.parseDouble(value);
+                break;
+            case "--algorithm":
+                algorithm = algorithm(value);
+                break;
+            case "--integrator":
+                integrator = integrator(value);
+                break;
+            case "--states":
+                states = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        if (model == null || duration <= 0) {
+            throw new IllegalArgumentException("A simulation and a positive duration are needed");
+        }
+        if (algorithm != null) {
+            model.setAlgorithm(algorithm);
+        }
+        if (integrator != null) {
+            model.setIntegrator(integrator);
+        }
+
+        HeadlessRunner runner = new HeadlessRunner(model);
+        if (step != null) {
+            runner.setStep(step);
+        }
+        System.out.println(runner.run(duration));
+        if (states != null) {
+            try (PrintStream out = new PrintStream(states)) {
+                runner.writeStates(out);
+            } catch (FileNotFoundException e) {
+                throw new IOException("Cannot write " + states, e);
+            }
+        }
+    }
+
+    private static Model scenario(String name) {
+        if (name.equals("solar")) {
+            return HeadlessRunner.solarSystem();
+        }
+        if (name.startsWith("rings:")) {
+            int n = Integer.parseInt(name.substring("rings:".length()));
+            return HeadlessRunner.rings(n, Math.max(1, (int) Math.sqrt(n / 100)));
+        }
+        throw new IllegalArgumentException("Unknown scenario " + name);
+    }
+
+    private static Algorithm algorithm(String name) {
+        switch (name) {
+        case "bruteforce":
+            return new AlgorithmBruteForce();
+        case "twobody":
+            return new AlgorithmTwoBody();
+        case "barneshut":
+            return new AlgorithmBarnesHut();
+        case "fmm":
+            return new AlgorithmFastMultipole();
+        case "kepler":
+            return new AlgorithmKepler();
+        default:
+            throw new IllegalArgumentException("Unknown algorithm " + name);
+        }
+    }
+
+    private static Integrator integrator(String name) {
+        switch (name) {
+        case "euler":
+            return new IntegratorEuler();
+        case "leapfrog":
+            return new IntegratorLeapfrog();
+        case "yoshida":
+            return new IntegratorYoshida();
+        case "blocksteps":
+            return new IntegratorBlockSteps();
+        default:
+            throw new IllegalArgumentException("Unknown integrator " + name);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package atlas.controller;
 
+import atlas.model.Body;
 import atlas.model.EpochJ2000;
 import atlas.model.Model;
 import atlas.model.ModelImpl;
@@ -120,9 +121,10 @@ public class ControllerImpl implements Controller {
                 break;
 
             case UPDATE_BODY:
-                synchronized (model.getBodiesToRender()) {
-                    ViewImpl.getView().getSelectedBody().ifPresent(i -> i.updateInfo(ViewImpl.getView().getUpdatedBody().get()));
-                }
+                ViewImpl.getView().getSelectedBody().ifPresent(i -> {
+                    Body updated = ViewImpl.getView().getUpdatedBody().get();
+                    this.gLoop.submit(m -> i.updateInfo(updated));
+                });
                 break;
 
             case LOAD:
@@ -180,26 +182,64 @@ public class ControllerImpl implements Controller {
                 break;
 
             case COLLISION_ONE:
-                this.model.setCollsion(new CollisionStrategyFragments());
+                this.gLoop.submit(m -> m.setCollsion(new CollisionStrategyFragments()));
                 break;
             case COLLISION_TWO:
-                this.model.setCollsion(new CollisionStrategyAbsorb());
+                this.gLoop.submit(m -> m.setCollsion(new CollisionStrategyAbsorb()));
+                break;
+            case DETECTION_GRID:
+                this.gLoop.submit(m -> m.setDetection(Algorithm.Detection.GRID));
+                break;
+            case DETECTION_SWEEP_AND_PRUNE:
+                this.gLoop.submit(m -> m.setDetection(Algorithm.Detection.SWEEP_AND_PRUNE));
+                break;
+            case TOGGLE_CONTINUOUS_DETECTION:
+                this.gLoop.submit(m -> m.toggleContinuousDetection());
                 break;
             case NBODY_ONE:
-                this.model.setAlgorithm(new AlgorithmBruteForce());
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmBruteForce()));
                 break;
             case NBODY_TWO:
-                this.model.setAlgorithm(new AlgorithmTwoBody());
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmTwoBody()));
                 break;
             case NBODY_THREE:
-                this.model.setAlgorithm(new AlgorithmBarnesHut());
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmBarnesHut()));
+                break;
+            case NBODY_THREE_FAST:
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmBarnesHut(AlgorithmBarnesHut.Accuracy.FAST)));
+                break;
+            case NBODY_THREE_BALANCED:
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmBarnesHut(AlgorithmBarnesHut.Accuracy.BALANCED)));
+                break;
+            case NBODY_THREE_PRECISE:
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmBarnesHut(AlgorithmBarnesHut.Accuracy.PRECISE)));
+                break;
+            case NBODY_FOUR:
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmFastMultipole()));
+                break;
+            case NBODY_FIVE:
+                this.gLoop.submit(m -> m.setAlgorithm(new AlgorithmKepler()));
+                break;
+            case INTEGRATOR_EULER:
+                this.gLoop.submit(m -> m.setIntegrator(new IntegratorEuler()));
+                break;
+            case INTEGRATOR_LEAPFROG:
+                this.gLoop.submit(m -> m.setIntegrator(new IntegratorLeapfrog()));
+                break;
+            case INTEGRATOR_YOSHIDA:
+                this.gLoop.submit(m -> m.setIntegrator(new IntegratorYoshida()));
+                break;
+            case INTEGRATOR_BLOCK_STEPS:
+                this.gLoop.submit(m -> m.setIntegrator(new IntegratorBlockSteps()));
                 break;
             case TOGGLE_TRAILS:
-                this.model.toggleTrail();
+                this.gLoop.submit(m -> m.toggleTrail());
                 break;
             default:
                 break;
         }
+        // whatever changed, a stopped simulation has to show it
+        this.gLoop.requestRender();
 
     }
 }
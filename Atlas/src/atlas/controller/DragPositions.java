@@ -2,24 +2,32 @@ package atlas.controller;
 
 import java.awt.MouseInfo;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
 
+import atlas.model.Body;
 import atlas.utils.Pair;
 import atlas.view.ViewImpl;
 
 /**
- * This thread sets the position of body to move. 
+ * This thread sets the position of body to move. The positions are handed to
+ * the game loop, which moves the body between two updates: only the last one
+ * is kept until the loop takes it, so a single change is queued at a time.
  * 
  * @author andrea
  */
 
 public class DragPositions extends Thread {
 
-    private double scale;
+    private final GameLoop gLoop;
+    private volatile double scale;
     private Pair<Double, Double> reference;
     private static final int step = 33;
-    private boolean bool = true;
+    private volatile boolean bool = true;
+    /* Body and position the loop has not taken yet */
+    private final AtomicReference<Pair<Body, Pair<Double, Double>>> target = new AtomicReference<>();
 
-    public DragPositions(double scale, Pair<Double, Double> reference) {
+    public DragPositions(GameLoop gLoop, double scale, Pair<Double, Double> reference) {
+        this.gLoop = gLoop;
         this.scale = scale;
         this.reference = reference;
     }
@@ -30,10 +38,14 @@ public class DragPositions extends Thread {
             long last = System.currentTimeMillis();
             while (System.currentTimeMillis() - last < step) {
             	try{
-                ViewImpl.getView().getSelectedBody().get().setPosX((MouseInfo.getPointerInfo().getLocation().getX() - 20
-                        - ViewImpl.getView().getRenderScreenOrig().getX() - this.reference.getX()) / actualScale);
-                ViewImpl.getView().getSelectedBody().get().setPosY((MouseInfo.getPointerInfo().getLocation().getY() - 5
-                        - ViewImpl.getView().getRenderScreenOrig().getY() - this.reference.getY()) / -actualScale);
+                Body body = ViewImpl.getView().getSelectedBody().get();
+                double x = (MouseInfo.getPointerInfo().getLocation().getX() - 20
+                        - ViewImpl.getView().getRenderScreenOrig().getX() - this.reference.getX()) / actualScale;
+                double y = (MouseInfo.getPointerInfo().getLocation().getY() - 5
+                        - ViewImpl.getView().getRenderScreenOrig().getY() - this.reference.getY()) / -actualScale;
+                if (this.target.getAndSet(new Pair<>(body, new Pair<>(x, y))) == null) {
+                    this.gLoop.submit(m -> this.moveBody());
+                }
             	} catch (NoSuchElementException e) {
             		
             	}
@@ -48,6 +60,15 @@ public class DragPositions extends Thread {
     }
     
 
+    /* Run by the game loop, moves the body to the last position */
+    private void moveBody() {
+        Pair<Body, Pair<Double, Double>> t = this.target.getAndSet(null);
+        if (t != null) {
+            t.getX().setPosX(t.getY().getX());
+            t.getX().setPosY(t.getY().getY());
+        }
+    }
+
     public void setScale(Double scale) {
         this.scale = scale;
     }
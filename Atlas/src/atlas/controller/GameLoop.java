@@ -1,8 +1,12 @@
 package atlas.controller;
 
-import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
-import atlas.model.Body;
+import atlas.model.FrameSnapshot;
 import atlas.model.Model;
 import atlas.utils.Units;
 import atlas.view.View;
@@ -18,15 +22,31 @@ public class GameLoop extends Thread {
 	private volatile int speed;
 	private volatile long precision;
 	private final static int FPS = 50;
-	private final static int SKIP_TICKS = 1000 / FPS;
+	/* Updates of the simulation per second, the view moves the bodies in between */
+	private final static int TICKS_PER_SECOND = 25;
+	private final static int SKIP_TICKS = 1000 / TICKS_PER_SECOND;
+	/* Shortest time between two frames of a stopped simulation, in ns */
+	private final static long FRAME = TimeUnit.SECONDS.toNanos(1) / FPS;
+	/* Length of a frame, in ns */
+	private final static long TICK = TimeUnit.MILLISECONDS.toNanos(SKIP_TICKS);
 	private final static int MAX_FRAMESKIP = 10;
+	/* Longest wait for the view to take a frame, in ns */
+	private final static long MAX_RENDER_WAIT = TICK;
+	/* How often the view is checked while waiting for it, in ns */
+	private final static long RENDER_POLL = TimeUnit.MICROSECONDS.toNanos(200);
+	/* Share of a frame the updates may take */
+	private final static double UPDATE_SHARE = 0.8;
 	private final static int STANDARD_PRECISION = Units.DAY_SEC.getValue()/2;
 	private volatile int loop;
 	private long next_game_tick;
-	private StatusSim status;
+	private volatile StatusSim status;
+	private volatile boolean renderRequested = true;
 	private Model model;
-	private View view;
-	private Optional<Body> nextBodyToAdd = Optional.empty();
+	/* Set by the view thread, read by the loop */
+	private volatile View view;
+	/* Changes to the model, from any thread, run by the loop */
+	private final Queue<Consumer<Model>> commands = new ConcurrentLinkedQueue<>();
+	private final SpeedGovernor governor = new SpeedGovernor(TICK, (long) (TICK * UPDATE_SHARE));
     
 
     /**
@@ -46,59 +66,153 @@ public class GameLoop extends Thread {
     /**
      * SKIP_TICK sets the cycle of gameloop. If the cycle is slow to render all
 	 * bodies, it skip some frames (decrease frame rate) and it does more
-	 * consecutive updates, or else it sleep to lock fps bound.
+	 * consecutive updates, or else it waits until the deadline of the frame to
+	 * lock fps bound. The cycle is longer than a frame of the screen: the view
+	 * interpolates the bodies between the frames it gets, so the simulation
+	 * runs fewer, longer steps.
+	 * <p>
+	 * Physics and rendering are a two stage pipeline: a frame is handed to the
+	 * view as soon as its updates are done, and the updates of the next frame
+	 * run while the view draws it. The view is never more than one frame
+	 * behind: if it has not taken the previous frame yet, the loop waits for it
+	 * (up to MAX_RENDER_WAIT) before handing over the new one, which otherwise
+	 * replaces the one not drawn.
+	 * <p>
+	 * The updates of a frame are planned by a {@link SpeedGovernor}, to fit in
+	 * a share of the frame: when they are too slow, the simulation runs fewer
+	 * of them (or shorter ones if the integrator allows it) and does not catch
+	 * up the lost ticks, instead of dropping the frame rate.
+	 * <p>
+	 * When the simulation is not running the loop is idle: it renders only
+	 * when asked to (see {@link #requestRender()}), at most FPS times a second, and
+	 * is parked otherwise.
+	 * <p>
+	 * The changes to the model requested by other threads are queued (see
+	 * {@link #submit(Consumer)}) and run by the loop between two updates, so
+	 * the loop never takes a lock.
      */
 
     public void run() {
         while (!status.equals(StatusSim.EXIT)) {
-            this.next_game_tick = System.currentTimeMillis();
+            this.next_game_tick = System.nanoTime();
+            this.governor.reset();
             while (status.equals(StatusSim.RUNNING)) {
-                long lastFrame = System.currentTimeMillis();
+                long lastFrame = System.nanoTime();
                 this.loop = 0;
-                while ((System.currentTimeMillis() > this.next_game_tick) && (this.loop < MAX_FRAMESKIP)) {
-					synchronized (this.model.getBodiesToRender()) {
-						for (int i = 0; i < speed; i++) {
-							this.model.updateSim(precision / FPS);
-						}
-					}
-                    this.next_game_tick += SKIP_TICKS;
+                while ((System.nanoTime() - this.next_game_tick > 0) && (this.loop < MAX_FRAMESKIP)) {
+                    if (this.loop > 0 && System.nanoTime() - lastFrame >= this.governor.getBudget()) {
+                        // no time left to catch up: the simulation slows down instead
+                        this.next_game_tick = System.nanoTime();
+                        break;
+                    }
+                    this.runCommands();
+                    this.update(lastFrame + this.governor.getBudget());
+                    this.next_game_tick += TICK;
                     this.loop++;
-                }
-                /* sleep for 1 ms if too fast (dormo fino a il tempo dall'ultimo
-                 frame renderizzato sia uguale a skip ticks, per non
-                 velocizzare la simulazione)*/
-                while (System.currentTimeMillis() - lastFrame < SKIP_TICKS) {
-                    try {
-                        Thread.sleep(1);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
+                    if (this.governor.isLimiting()) {
+                        this.next_game_tick = System.nanoTime();
+                        break;
                     }
-                    // quando sono in pausa passo al model lo Status
                 }
-                // timeSLF = time since last frame
-                long timeSLF = System.currentTimeMillis() - lastFrame;
-                // rendering();
-                long FPS = 1000 / timeSLF;
-                
-                synchronized (this.model.getBodiesToRender()) {					
-                	if(this.nextBodyToAdd.isPresent()) {
-                		this.model.addBody(this.nextBodyToAdd.get());
-                		this.nextBodyToAdd = Optional.empty(); 
-                	}
-				}
-                
-                this.view.render(this.model.getBodiesToRender(), model.getTime(), (int)FPS);
+                this.runCommands();
+                this.renderRequested = false;
+
+                FrameSnapshot frame = new FrameSnapshot(this.model.getBodiesToRender(), model.getTime());
+                this.awaitView();
+                this.view.render(frame, this.governor.getRate());
+
+                // wait until the end of the frame, not to speed up the simulation
+                this.parkUntil(lastFrame + TICK, StatusSim.RUNNING);
+            }
+
+            this.runCommands();
+            if (this.renderRequested) {
+                this.renderRequested = false;
+                this.view.render(new FrameSnapshot(this.model.getBodiesToRender(), model.getTime()), 0);
+                // no more than a frame per tick, as when running
+                this.parkUntil(System.nanoTime() + FRAME, StatusSim.STOPPED);
+            }
+            if (status.equals(StatusSim.STOPPED) && !this.renderRequested && this.commands.isEmpty()) {
+                LockSupport.park(this);
             }
-            
-            this.view.render(this.model.getBodiesToRender(), model.getTime(), GameLoop.FPS);
+        }
+    }
+
+    /**
+     * The updates of a frame, as many as the governor allows: it may run fewer
+     * than speed updates, with longer steps if the integrator allows it, and
+     * stops early at the deadline.
+     */
+    private void update(long deadline) {
+        this.governor.plan(this.speed, precision / TICKS_PER_SECOND, this.model.isStepAdaptive());
+        long start = System.nanoTime();
+        int done = 0;
+        while (done < this.governor.getUpdates() && (done == 0 || System.nanoTime() - deadline < 0)) {
+            this.model.updateSim(this.governor.getStep());
+            done++;
+        }
+        this.governor.record(done, System.nanoTime() - start);
+    }
+
+    /**
+     * Asks for the bodies to be rendered again, even if the simulation is not
+     * running: for the changes of the camera, of the selection and of the
+     * bodies made while it is stopped.
+     */
+    public void requestRender() {
+        this.renderRequested = true;
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Queues a change to the model, run by the loop before its next update
+     * (or right away if the simulation is not running), in the order of
+     * submission. It can be called by any thread, the change must not be made
+     * to the model by the caller.
+     * 
+     * @param command
+     *            the change, applied to the model of the loop
+     */
+    public void submit(Consumer<Model> command) {
+        this.commands.add(command);
+        this.requestRender();
+    }
+
+    /*
+     * Runs the queued changes, the ones queued meanwhile too. A change which
+     * fails is dropped, the simulation goes on.
+     */
+    private void runCommands() {
+        Consumer<Model> command;
+        while ((command = this.commands.poll()) != null) {
             try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
+                command.accept(this.model);
+            } catch (RuntimeException e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /* Parks the thread until the deadline, or until the status changes */
+    private void parkUntil(long deadline, StatusSim during) {
+        long left = deadline - System.nanoTime();
+        while (left > 0 && status.equals(during)) {
+            LockSupport.parkNanos(this, left);
+            left = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Back-pressure of the view: waits, up to MAX_RENDER_WAIT, until the view
+     * has taken the last frame handed to it.
+     */
+    private void awaitView() {
+        long deadline = System.nanoTime() + MAX_RENDER_WAIT;
+        while (this.view.isFramePending() && deadline - System.nanoTime() > 0) {
+            LockSupport.parkNanos(this, RENDER_POLL);
+        }
+    }
+
     /**
      * This method sets the Status
      * 
@@ -107,6 +221,7 @@ public class GameLoop extends Thread {
      */
     private synchronized void setStatus(StatusSim status) {
         this.status = status;
+        LockSupport.unpark(this);
     }
 
     /**
@@ -143,6 +258,7 @@ public class GameLoop extends Thread {
 
     public void setView(View v) {
         this.view = v;
+        this.requestRender();
     }
      
     /**
@@ -161,15 +277,11 @@ public class GameLoop extends Thread {
         return this.precision;
     }
     
-    public void setModel(Model model) {
-        this.model = model;
-    }
-    
     /**
-     * This sets next body to add
+     * This replaces the model, between two updates
      */
-    public void setNextBodyToAdd(Body body) {
-        this.nextBodyToAdd = Optional.of(body);
+    public void setModel(Model model) {
+        this.submit(m -> this.model = model);
     }
 
 }
@@ -0,0 +1,290 @@
+package atlas.controller;
+
+import atlas.model.Body;
+import atlas.model.BodyType;
+import atlas.model.EpochJ2000;
+import atlas.model.Model;
+import atlas.model.ModelImpl;
+import atlas.model.Spawner;
+import atlas.utils.Units;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Advances a model without a view, as fast as the machine allows, for a given
+ * simulated time: the batch counterpart of the {@link GameLoop}, for the runs
+ * on machines without a display. Nothing here depends on JavaFX.
+ *
+ * @author andrea
+ */
+public class HeadlessRunner {
+
+    /**
+     * Default time step, in seconds: the one of the {@link GameLoop} at its
+     * standard precision.
+     */
+    public static final double DEFAULT_STEP = Units.DAY_SEC.getValue() / 2 / 25;
+
+    /* Same folder the saves of the application go to */
+    private static final String FILE_SEP = System.getProperty("file.separator");
+    private static final String SAVE_LOCATION = System.getProperty("user.dir") + FILE_SEP + "atlas_saves" + FILE_SEP
+            + "simulations";
+
+    private final Model model;
+    private double step = DEFAULT_STEP;
+
+    /**
+     * Creates a runner of the given model.
+     *
+     * @param model the model to advance
+     */
+    public HeadlessRunner(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * @return the model advanced by the runner
+     */
+    public Model getModel() {
+        return this.model;
+    }
+
+    /**
+     * @return the time step, in seconds
+     */
+    public double getStep() {
+        return this.step;
+    }
+
+    /**
+     * Sets the time step of every update of the model.
+     *
+     * @param step the time step, in seconds
+     */
+    public void setStep(double step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.step = step;
+    }
+
+    /**
+     * Advances the model for the given simulated time, without pauses. The
+     * last step is shortened to end exactly at that time.
+     *
+     * @param duration the simulated time, in seconds
+     * @return the timing statistics of the run
+     */
+    public Statistics run(double duration) {
+        Statistics stats = this.start();
+        this.advance(stats, duration, Long.MAX_VALUE);
+        return stats;
+    }
+
+    /* The statistics of a run, before its first step */
+    Statistics start() {
+        return new Statistics(this.model.getBodiesToRender().size());
+    }
+
+    /*
+     * Goes on with a run for about the given time (at least a step), or until
+     * the duration is simulated: then the statistics are completed and it
+     * returns true.
+     */
+    boolean advance(Statistics stats, double duration, long nanos) {
+        long begin = System.nanoTime();
+        double begun = stats.simulated;
+        double done = begun;
+        while (done < duration && (done == begun || System.nanoTime() - begin < nanos)) {
+            double dt = Math.min(this.step, duration - done);
+            long start = System.nanoTime();
+            this.model.updateSim(dt);
+            stats.add(System.nanoTime() - start, dt);
+            done += dt;
+        }
+        if (done < duration) {
+            return false;
+        }
+        stats.finish(this.model.getBodiesToRender().size());
+        return true;
+    }
+
+    /**
+     * Writes the state of every body, one line each, as comma separated values
+     * with a header: name, type, mass, radius, position and velocity.
+     *
+     * @param out the stream to write to
+     */
+    public void writeStates(PrintStream out) {
+        out.println("name,type,mass,radius,posX,posY,velX,velY");
+        for (Body b : this.model.getBodiesToRender()) {
+            out.println(String.format(Locale.ROOT, "%s,%s,%s,%s,%s,%s,%s,%s", b.getName(), b.getType(), b.getMass(),
+                    b.getProperties().getRadius(), b.getPosX(), b.getPosY(), b.getVelX(), b.getVelY()));
+        }
+    }
+
+    /**
+     * Loads a simulation saved by the application. The view settings saved
+     * after the model are ignored.
+     *
+     * @param save the path of the save, or its name in the saves folder of the
+     *             application
+     * @return the saved model
+     * @throws IOException              if the save can not be read
+     * @throws IllegalArgumentException if the save does not exist or does not
+     *                                  contain a simulation
+     */
+    public static Model loadSave(String save) throws IOException {
+        File f = new File(save);
+        if (!f.isFile()) {
+            f = new File(SAVE_LOCATION + FILE_SEP + save);
+        }
+        if (!f.isFile()) {
+            throw new IllegalArgumentException("Cannot load, file doesn't exits!");
+        }
+        try (InputStream bstream = new BufferedInputStream(new FileInputStream(f));
+                ObjectInputStream ostream = new ObjectInputStream(bstream);) {
+            return (Model) ostream.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Content of the file is not suitable.");
+        }
+    }
+
+    /**
+     * @return the solar system at the epoch J2000, as the application starts
+     */
+    public static Model solarSystem() {
+        return new ModelImpl(EpochJ2000.values());
+    }
+
+    /**
+     * Generates the solar system at the epoch J2000 with copies of its bodies,
+     * with their own velocity, spawned on rings around the Sun, 1 AU apart.
+     *
+     * @param bodies the number of bodies to spawn
+     * @param rings  the number of rings
+     * @return the generated model
+     */
+    public static Model rings(int bodies, int rings) {
+        Model m = solarSystem();
+        List<Body> templates = Arrays.stream(EpochJ2000.values()).map(ep -> ep.getBody())
+                .collect(Collectors.toList());
+        for (int r = 1; r <= rings; r++) {
+            int n = bodies / rings + (r <= bodies % rings ? 1 : 0);
+            m.getBodiesToRender().addAll(new Spawner().spawn(n, templates, 0, 0, BodyType.AU * r));
+        }
+        return m;
+    }
+
+    /**
+     * Timing statistics of a run.
+     */
+    public static class Statistics {
+
+        private final int initialBodies;
+        private int finalBodies;
+        private long steps;
+        private double simulated;
+        private long totalNanos;
+        private long minNanos = Long.MAX_VALUE;
+        private long maxNanos;
+
+        private Statistics(int initialBodies) {
+            this.initialBodies = initialBodies;
+        }
+
+        private void add(long nanos, double dt) {
+            this.steps++;
+            this.simulated += dt;
+            this.totalNanos += nanos;
+            this.minNanos = Math.min(this.minNanos, nanos);
+            this.maxNanos = Math.max(this.maxNanos, nanos);
+        }
+
+        private void finish(int bodies) {
+            this.finalBodies = bodies;
+        }
+
+        /**
+         * @return the number of steps
+         */
+        public long getSteps() {
+            return this.steps;
+        }
+
+        /**
+         * @return the simulated time, in seconds
+         */
+        public double getSimulated() {
+            return this.simulated;
+        }
+
+        /**
+         * @return the time spent updating the model, in seconds
+         */
+        public double getElapsed() {
+            return this.totalNanos / 1e9;
+        }
+
+        /**
+         * @return the mean time of a step, in milliseconds
+         */
+        public double getMeanStep() {
+            return this.steps > 0 ? this.totalNanos / 1e6 / this.steps : 0;
+        }
+
+        /**
+         * @return the shortest step, in milliseconds
+         */
+        public double getMinStep() {
+            return this.steps > 0 ? this.minNanos / 1e6 : 0;
+        }
+
+        /**
+         * @return the longest step, in milliseconds
+         */
+        public double getMaxStep() {
+            return this.maxNanos / 1e6;
+        }
+
+        /**
+         * @return the simulated days per second of computation
+         */
+        public double getSpeed() {
+            return this.totalNanos > 0 ? this.simulated / Units.DAY_SEC.getValue() / this.getElapsed() : 0;
+        }
+
+        /**
+         * @return the number of bodies before the run
+         */
+        public int getInitialBodies() {
+            return this.initialBodies;
+        }
+
+        /**
+         * @return the number of bodies after the run
+         */
+        public int getFinalBodies() {
+            return this.finalBodies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "bodies: %d -> %d%nsteps: %d%nsimulated: %.3f days%nelapsed: %.3f s%n"
+                            + "step: mean %.3f ms, min %.3f ms, max %.3f ms%nspeed: %.3f simulated days/s",
+                    this.initialBodies, this.finalBodies, this.steps, this.simulated / Units.DAY_SEC.getValue(),
+                    this.getElapsed(), this.getMeanStep(), this.getMinStep(), this.getMaxStep(), this.getSpeed());
+        }
+    }
+}
@@ -37,14 +37,14 @@ public class InputManagerImpl implements InputManager {
 	private Status status = Status.DEFAULT;
 	private Optional<Body> bodyToAdd = Optional.empty();
 	private double scale = 1.4000000000000000E-9;
-	private Pair<Double, Double> reference;
+	private volatile Pair<Double, Double> reference;
 
 	public InputManagerImpl(View view, Model model, GameLoop gLoop, Pair<Double, Double> reference) {
 		this.view = view;
 		this.model = model;
 		this.gLoop = gLoop;
 		this.reference = reference;
-		this.threadDrag = new DragPositions(this.scale, this.reference);
+		this.threadDrag = new DragPositions(this.gLoop, this.scale, this.reference);
 
 		this.view.updateReferences(reference, scale);
 
@@ -95,11 +95,12 @@ public class InputManagerImpl implements InputManager {
 					- this.reference.getX()) / this.scale);
 			this.bodyToAdd.get().setPosY((this.view.getLastMousePos().getY() - this.view.getRenderScreenOrig().getY()
 					- this.reference.getY()) / -this.scale);
-			this.gLoop.setNextBodyToAdd(this.bodyToAdd.get());
+			Body body = this.bodyToAdd.get();
+			this.gLoop.submit(m -> m.addBody(body));
 			this.status = Status.DEFAULT;
 
 		} else if (this.status.equals(Status.EDIT)) {
-			this.threadDrag = new DragPositions(this.scale, this.reference);
+			this.threadDrag = new DragPositions(this.gLoop, this.scale, this.reference);
 			this.threadDrag.start();
 			this.status = Status.DRAGGING;
 		}
@@ -328,9 +329,13 @@ public class InputManagerImpl implements InputManager {
 
 	@Override
 	public void initialReference() {
-		this.model.getBodiesToRender().stream().max((a, b) -> (int) (a.getMass() - b.getMass()))
-				.ifPresent(i -> this.reference = new Pair<>(i.getPosX() * -scale, i.getPosY() * scale));
-		this.view.updateReferences(this.reference, this.scale);
+		double scale = this.scale;
+		// the bodies are read by the game loop, between two updates
+		this.gLoop.submit(m -> {
+			m.getBodiesToRender().stream().max((a, b) -> (int) (a.getMass() - b.getMass()))
+					.ifPresent(i -> this.reference = new Pair<>(i.getPosX() * -scale, i.getPosY() * scale));
+			this.view.updateReferences(this.reference, scale);
+		});
 	}
 
 	private void setDefault() {
@@ -0,0 +1,369 @@
+package atlas.controller;
+
+import atlas.controller.HeadlessRunner.Statistics;
+import atlas.model.Model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many models at the same time without a view, e.g. the variants of a
+ * scenario, on a single pool of worker threads. Every simulation is advanced
+ * by a {@link HeadlessRunner} in slices of a few milliseconds: at the end of a
+ * slice it goes back at the end of the queue of the host, so a few threads are
+ * shared by any number of simulations, which take turns, and a simulation is
+ * paused simply by not queuing it again.
+ * <p>
+ * The parallel algorithms of the models run on the workers of the same pool,
+ * and the idle ones steal their work: there are never more threads than the
+ * parallelism of the host, however many simulations it runs.
+ * <p>
+ * The models must not share their bodies: see {@link #copyOf(Model)}.
+ *
+ * @author andrea
+ */
+public class SimulationHost {
+
+    /* Time a simulation runs before leaving the worker to the others */
+    private static final long SLICE = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * The states of a simulation.
+     */
+    public enum State {
+        /** Waiting for a worker. */
+        QUEUED,
+        /** Being advanced by a worker. */
+        RUNNING,
+        /** Paused, it is not queued until resumed. */
+        PAUSED,
+        /** The duration is simulated. */
+        DONE,
+        /** Cancelled before the end. */
+        CANCELLED,
+        /** Stopped by an exception of the model. */
+        FAILED
+    }
+
+    private final ForkJoinPool pool;
+    private final List<Simulation> simulations = new CopyOnWriteArrayList<>();
+    /*
+     * Simulations waiting for a worker, in order. A worker would run the tasks
+     * it queues itself before the others, so the slices are taken from here.
+     */
+    private final Queue<Simulation> ready = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a host with a worker for every available processor.
+     */
+    public SimulationHost() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a host.
+     *
+     * @param parallelism the number of worker threads
+     */
+    public SimulationHost(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Starts a simulation with the default time step.
+     *
+     * @param model    the model to advance, not shared with other simulations
+     * @param duration the simulated time, in seconds
+     * @return the simulation
+     */
+    public Simulation submit(Model model, double duration) {
+        return this.submit(model, duration, HeadlessRunner.DEFAULT_STEP);
+    }
+
+    /**
+     * Starts a simulation.
+     *
+     * @param model    the model to advance, not shared with other simulations
+     * @param duration the simulated time, in seconds
+     * @param step     the time step, in seconds
+     * @return the simulation
+     */
+    public Simulation submit(Model model, double duration, double step) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (this.pool.isShutdown()) {
+            throw new IllegalStateException("The host is shut down");
+        }
+        HeadlessRunner runner = new HeadlessRunner(model);
+        runner.setStep(step);
+        Simulation s = new Simulation(runner, duration);
+        this.simulations.add(s);
+        s.schedule();
+        return s;
+    }
+
+    /**
+     * @return the simulations submitted, in order
+     */
+    public List<Simulation> getSimulations() {
+        return Collections.unmodifiableList(this.simulations);
+    }
+
+    /**
+     * Waits for the end of every simulation submitted, the paused ones must be
+     * resumed by another thread.
+     *
+     * @return the statistics of the simulations done, in order of submission
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public List<Statistics> awaitAll() throws InterruptedException {
+        List<Statistics> results = new ArrayList<>();
+        for (Simulation s : this.simulations) {
+            try {
+                results.add(s.await());
+            } catch (ExecutionException | CancellationException e) {
+                // its state tells what happened
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Cancels every simulation and stops the workers.
+     */
+    public void shutdown() {
+        this.simulations.forEach(Simulation::cancel);
+        this.pool.shutdown();
+    }
+
+    /* Runs a slice of the simulation which has been waiting the longest */
+    private void runNext() {
+        Simulation s = this.ready.poll();
+        if (s != null) {
+            s.slice();
+        }
+    }
+
+    /**
+     * Copies a model with its bodies, to run its variants at the same time:
+     * the models created from the same bodies (e.g. the solar system at the
+     * epoch J2000) share them.
+     *
+     * @param model the model to copy
+     * @return a model with copies of its bodies and rules
+     * @throws IllegalArgumentException if the model can not be copied
+     */
+    public static Model copyOf(Model model) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(model);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (Model) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("The model can not be copied", e);
+        }
+    }
+
+    /**
+     * A simulation run by the host. Its progress can be read at any time, the
+     * model only once it is paused or over.
+     */
+    public final class Simulation {
+
+        private final HeadlessRunner runner;
+        private final Statistics stats;
+        private final double duration;
+        private final CompletableFuture<Statistics> result = new CompletableFuture<>();
+        private volatile State state = State.QUEUED;
+        private volatile double simulated;
+        private volatile long steps;
+        private boolean pauseRequested;
+        private boolean cancelRequested;
+
+        private Simulation(HeadlessRunner runner, double duration) {
+            this.runner = runner;
+            this.stats = runner.start();
+            this.duration = duration;
+        }
+
+        private void schedule() {
+            SimulationHost.this.ready.add(this);
+            SimulationHost.this.pool.execute(ForkJoinTask.adapt(SimulationHost.this::runNext));
+        }
+
+        private void slice() {
+            synchronized (this) {
+                if (this.state != State.QUEUED) {
+                    // cancelled while queued
+                    return;
+                }
+                if (this.pauseRequested) {
+                    this.state = State.PAUSED;
+                    return;
+                }
+                this.state = State.RUNNING;
+            }
+            boolean done;
+            try {
+                done = this.runner.advance(this.stats, this.duration, SLICE);
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    this.state = State.FAILED;
+                }
+                this.result.completeExceptionally(e);
+                return;
+            }
+            this.simulated = this.stats.getSimulated();
+            this.steps = this.stats.getSteps();
+            State end;
+            synchronized (this) {
+                if (done) {
+                    end = State.DONE;
+                } else if (this.cancelRequested) {
+                    end = State.CANCELLED;
+                } else if (this.pauseRequested) {
+                    end = State.PAUSED;
+                } else {
+                    end = State.QUEUED;
+                    this.schedule();
+                }
+                this.state = end;
+            }
+            if (end == State.DONE) {
+                this.result.complete(this.stats);
+            } else if (end == State.CANCELLED) {
+                this.result.cancel(false);
+            }
+        }
+
+        /**
+         * Pauses the simulation at the end of the current slice. Nothing
+         * happens if it is over.
+         */
+        public synchronized void pause() {
+            this.pauseRequested = true;
+        }
+
+        /**
+         * Resumes a paused simulation.
+         */
+        public synchronized void resume() {
+            this.pauseRequested = false;
+            if (this.state == State.PAUSED) {
+                this.state = State.QUEUED;
+                this.schedule();
+            }
+        }
+
+        /**
+         * Cancels the simulation at the end of the current slice.
+         *
+         * @return false if it was already over
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (this.isOver()) {
+                    return false;
+                }
+                this.cancelRequested = true;
+                if (this.state == State.RUNNING) {
+                    return true;
+                }
+                this.state = State.CANCELLED;
+            }
+            this.result.cancel(false);
+            return true;
+        }
+
+        /**
+         * Waits for the end of the simulation.
+         *
+         * @return the statistics of the run
+         * @throws InterruptedException if the thread is interrupted while
+         *                              waiting
+         * @throws ExecutionException   if the model threw an exception, as its
+         *                              cause
+         * @throws CancellationException if the simulation was cancelled
+         */
+        public Statistics await() throws InterruptedException, ExecutionException {
+            return this.result.get();
+        }
+
+        /**
+         * @return the end of the simulation, to be notified of it
+         */
+        public CompletableFuture<Statistics> getResult() {
+            return this.result;
+        }
+
+        /**
+         * @return the state of the simulation
+         */
+        public State getState() {
+            return this.state;
+        }
+
+        /**
+         * @return true if the simulation is done, cancelled or failed
+         */
+        public boolean isOver() {
+            State s = this.state;
+            return s == State.DONE || s == State.CANCELLED || s == State.FAILED;
+        }
+
+        /**
+         * @return the simulated time so far, in seconds
+         */
+        public double getSimulated() {
+            return this.simulated;
+        }
+
+        /**
+         * @return the fraction of the duration simulated so far, from 0 to 1
+         */
+        public double getProgress() {
+            return this.simulated / this.duration;
+        }
+
+        /**
+         * @return the steps run so far
+         */
+        public long getSteps() {
+            return this.steps;
+        }
+
+        /**
+         * @return the simulated time asked for, in seconds
+         */
+        public double getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * @return the model, to be read only while the simulation is paused or
+         *         over
+         */
+        public Model getModel() {
+            return this.runner.getModel();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package atlas.controller;
+
+/**
+ * Fits the updates of a frame in a time budget. It measures how long the
+ * updates take and plans, for every frame, the updates to run: the ones asked
+ * for if they fit, less simulated time otherwise.
+ * <p>
+ * With a fixed step integrator an update costs the same whatever its step, so
+ * the governor runs fewer updates of the step asked for. An adaptive
+ * integrator divides the step on its own, so its cost follows the simulated
+ * time rather than the number of updates: the governor shortens the steps,
+ * down to a fraction of the one asked for, even below a single update.
+ * <p>
+ * It also measures the speed of the simulation actually reached, as a
+ * fraction of the one asked for.
+ *
+ * @author andrea
+ */
+public class SpeedGovernor {
+
+    /* Weight of the last measure in the average cost of an update */
+    private static final double SMOOTHING = 0.25;
+    /* Shortest time a frame simulates, as a fraction of a step asked for */
+    private static final int MAX_SHRINK = 64;
+    /* Length of the window the speed is measured on, in ns */
+    private static final long RATE_WINDOW = 1_000_000_000L;
+
+    private final long tick;
+    private final long budget;
+    /* Average cost of an update and of a simulated second, in ns */
+    private double updateCost;
+    private double secondCost;
+    private int updates;
+    private double step;
+    private double requested;
+    private boolean limiting;
+
+    private long windowStart;
+    private double windowSimulated;
+    private double rate = 1;
+
+    /**
+     * Creates a governor.
+     *
+     * @param tick
+     *            the length of a frame, in ns
+     * @param budget
+     *            the time the updates of a frame may take, in ns
+     */
+    public SpeedGovernor(long tick, long budget) {
+        this.tick = tick;
+        this.budget = budget;
+        this.reset();
+    }
+
+    /**
+     * Forgets the speed measured so far, when the simulation starts running
+     * again. The cost of an update is kept.
+     */
+    public void reset() {
+        this.windowStart = System.nanoTime();
+        this.windowSimulated = 0;
+        this.rate = 1;
+    }
+
+    /**
+     * Plans the updates of a frame.
+     *
+     * @param speed
+     *            the number of updates asked for
+     * @param sec
+     *            the time step of every update asked for
+     * @param adaptive
+     *            whether the integrator keeps its accuracy with longer steps
+     */
+    public void plan(int speed, double sec, boolean adaptive) {
+        this.requested = speed * sec;
+        this.step = sec;
+        if (this.updateCost == 0) {
+            // nothing measured yet, a single update to measure it
+            this.updates = Math.min(1, speed);
+        } else if (!adaptive) {
+            this.updates = (int) Math.min(speed, Math.max(1, this.budget / this.updateCost));
+        } else {
+            double total = Math.min(this.requested, Math.max(sec / MAX_SHRINK, this.budget / this.secondCost));
+            this.updates = (int) Math.min(speed, Math.ceil(total / sec));
+            this.step = total / this.updates;
+        }
+    }
+
+    /**
+     * @return the number of updates planned
+     */
+    public int getUpdates() {
+        return this.updates;
+    }
+
+    /**
+     * @return the time step of the updates planned
+     */
+    public double getStep() {
+        return this.step;
+    }
+
+    /**
+     * @return the time the updates of a frame may take, in ns
+     */
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Records the updates run for the last plan.
+     *
+     * @param done
+     *            the number of updates run, fewer than planned if they ran
+     *            out of time
+     * @param nanos
+     *            the time they took
+     */
+    public void record(int done, long nanos) {
+        double simulated = done * this.step;
+        if (done > 0) {
+            this.updateCost = average(this.updateCost, (double) nanos / done);
+            this.secondCost = average(this.secondCost, nanos / simulated);
+        }
+        // longer steps may add up to slightly less than asked for
+        this.limiting = simulated < this.requested * (1 - 1e-9);
+        this.windowSimulated += simulated;
+        long now = System.nanoTime();
+        long elapsed = now - this.windowStart;
+        if (elapsed >= RATE_WINDOW) {
+            // the time asked for is the one of a frame for every tick
+            double expected = this.requested * elapsed / this.tick;
+            this.rate = expected > 0 ? this.windowSimulated / expected : 1;
+            this.windowStart = now;
+            this.windowSimulated = 0;
+        }
+    }
+
+    private static double average(double average, double measure) {
+        return average > 0 ? average + SMOOTHING * (measure - average) : measure;
+    }
+
+    /**
+     * @return true if the last updates simulated less time than asked for
+     */
+    public boolean isLimiting() {
+        return this.limiting;
+    }
+
+    /**
+     * @return the simulated time over the one asked for, measured over the
+     *         last second: 1 if the simulation runs at the speed asked for
+     */
+    public double getRate() {
+        return this.rate;
+    }
+}
@@ -1,129 +1,350 @@
 package atlas.model;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Barnes-Hut quadtree stored as a pool of nodes in parallel primitive arrays.
+ * Each node represents a square region and the aggregate body (total mass and
+ * center of mass) of all the bodies inside it. The pool is reset and reused
+ * at every step, so building and walking the tree allocates nothing once it
+ * has grown to the size of the simulation.
+ * <p>
+ * Bodies are referenced by their index in a {@link BodyStore}. The tree can be
+ * filled by inserting the bodies one by one, or built at once from their
+ * {@link MortonOrder}.
+ */
 public class BHTree {
-    private Body body;     // body or aggregate body stored in this node
-    private Quad quad;     // square region that the tree represents
-    private BHTree NW;     // tree representing northwest quadrant
-    private BHTree NE;     // tree representing northeast quadrant
-    private BHTree SW;     // tree representing southwest quadrant
-    private BHTree SE;     // tree representing southeast quadrant
-
-    //Create and initialize a new bhtree. Initially, all nodes are null and will be filled by recursion
-    //Each BHTree represents a quadrant and a body that represents all bodies inside the quadrant
+
+    /* Deeper nodes are not split any more, they aggregate all their bodies */
+    private static final int MAX_DEPTH = 64;
+    private static final int MIN_CAPACITY = 64;
+
+    /* Content of a node, body indices are >= 0 */
+    private static final int EMPTY = -1;
+    private static final int INTERNAL = -2;
+    private static final int BUCKET = -3;
+
+    /* Children order */
+    private static final int NW = 0;
+    private static final int NE = 1;
+    private static final int SW = 2;
+    private static final int SE = 3;
+
+    private int count;
+    private double[] xmid = new double[0];     // center of the square region
+    private double[] ymid = new double[0];
+    private double[] length = new double[0];   // side of the square region
+    private double[] comX = new double[0];     // center of mass
+    private double[] comY = new double[0];
+    private double[] mass = new double[0];     // total mass
+    private int[] body = new int[0];           // body index, EMPTY, INTERNAL or BUCKET
+    private int[] children = new int[0];       // 4 per node, -1 if absent
+
+    private final MortonOrder morton = new MortonOrder();
+    private int[] inside = new int[0];
+
+    /**
+     * Creates an empty tree, {@link #reset(double, double, double)} must be
+     * called before inserting bodies.
+     */
+    public BHTree() {
+    }
+
+    /**
+     * Creates an empty tree covering the given quadrant.
+     *
+     * @param q the root region
+     */
     public BHTree(Quad q) {
-        this.quad = q;
-        this.body = null;
-        this.NW = null;
-        this.NE = null;
-        this.SW = null;
-        this.SE = null;
+        this.reset(q.getXmid(), q.getYmid(), q.length());
     }
 
-    //If all nodes of the BHTree are null, then the quadrant represents a single body and it is "external"
-    public Boolean isExternal(BHTree t) {
-        if (t.NW == null && t.NE == null && t.SW == null && t.SE == null) return true;
-        else return false;
+    /**
+     * Empties the tree, keeping the allocated nodes for reuse, and sets the
+     * root region.
+     *
+     * @param xmid   x coordinate of the center of the root region
+     * @param ymid   y coordinate of the center of the root region
+     * @param length side of the root region
+     */
+    public void reset(double xmid, double ymid, double length) {
+        this.count = 0;
+        this.newNode(xmid, ymid, length);
     }
 
-    //We have to populate the tree with bodies. We start at the current tree and recursively travel through the branches
-    public void insert(Body b) {
-        //If there's not a body there already, put the body there.
-        if (this.body == null) {
-            this.body = b;
+    /**
+     * Checks if a point is inside the root region.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return whether the point can be inserted in the tree
+     */
+    public boolean contains(double x, double y) {
+        return this.contains(0, x, y);
+    }
+
+    private boolean contains(int node, double x, double y) {
+        double half = this.length[node] / 2.0;
+        return x <= this.xmid[node] + half && x >= this.xmid[node] - half && y <= this.ymid[node] + half
+                && y >= this.ymid[node] - half;
+    }
+
+    private int newNode(double xmid, double ymid, double length) {
+        if (this.count == this.body.length) {
+            this.grow();
         }
-        //If there's already a body there, but it's not an external node
-        //combine the two bodies and figure out which quadrant of the
-        //tree it should be located in. Then recursively update the nodes below it.
-        else if (this.isExternal(this) == false) {
-            this.body = b.add(this.body);
-
-            Quad northwest = this.quad.NW();
-            if (b.in(northwest)) {
-                if (this.NW == null) {
-                    this.NW = new BHTree(northwest);
-                }
-                NW.insert(b);
-            } else {
-                Quad northeast = this.quad.NE();
-                if (b.in(northeast)) {
-                    if (this.NE == null) {
-                        this.NE = new BHTree(northeast);
-                    }
-                    NE.insert(b);
-                } else {
-                    Quad southeast = this.quad.SE();
-                    if (b.in(southeast)) {
-                        if (this.SE == null) {
-                            this.SE = new BHTree(southeast);
-                        }
-                        SE.insert(b);
-                    } else {
-                        Quad southwest = this.quad.SW();
-                        if (this.SW == null) {
-                            this.SW = new BHTree(southwest);
-                        }
-                        SW.insert(b);
-                    }
-                }
+        int n = this.count++;
+        this.xmid[n] = xmid;
+        this.ymid[n] = ymid;
+        this.length[n] = length;
+        this.comX[n] = 0;
+        this.comY[n] = 0;
+        this.mass[n] = 0;
+        this.body[n] = EMPTY;
+        Arrays.fill(this.children, 4 * n, 4 * n + 4, -1);
+        return n;
+    }
+
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, this.body.length * 2);
+        this.xmid = Arrays.copyOf(this.xmid, capacity);
+        this.ymid = Arrays.copyOf(this.ymid, capacity);
+        this.length = Arrays.copyOf(this.length, capacity);
+        this.comX = Arrays.copyOf(this.comX, capacity);
+        this.comY = Arrays.copyOf(this.comY, capacity);
+        this.mass = Arrays.copyOf(this.mass, capacity);
+        this.body = Arrays.copyOf(this.body, capacity);
+        this.children = Arrays.copyOf(this.children, 4 * capacity);
+    }
+
+    /* Returns the child of the node containing the point, creating it if needed */
+    private int child(int node, double x, double y) {
+        boolean west = x < this.xmid[node];
+        boolean north = y >= this.ymid[node];
+        int q = north ? (west ? NW : NE) : (west ? SW : SE);
+        int c = this.children[4 * node + q];
+        return c >= 0 ? c : this.newChild(node, q);
+    }
+
+    /* Creates the child of the node in the quadrant q */
+    private int newChild(int node, int q) {
+        boolean west = q == NW || q == SW;
+        boolean north = q == NW || q == NE;
+        double quarter = this.length[node] / 4.0;
+        int c = this.newNode(this.xmid[node] + (west ? -quarter : quarter),
+                this.ymid[node] + (north ? quarter : -quarter), this.length[node] / 2.0);
+        this.children[4 * node + q] = c;
+        return c;
+    }
+
+    /* Adds a point mass to the aggregate body of the node */
+    private void aggregate(int node, double x, double y, double m) {
+        double sum = this.mass[node] + m;
+        this.comX[node] = (this.comX[node] * this.mass[node] + x * m) / sum;
+        this.comY[node] = (this.comY[node] * this.mass[node] + y * m) / sum;
+        this.mass[node] = sum;
+    }
+
+    /**
+     * Inserts a body, starting from the root and going down until an empty
+     * node is found. Every traversed node aggregates the body.
+     *
+     * @param store the bodies
+     * @param i     the index of the body to insert
+     */
+    public void insert(BodyStore store, int i) {
+        this.insert(store, i, 0, 0);
+    }
+
+    /* Inserts a body below a node at the given depth */
+    private void insert(BodyStore store, int i, int node, int depth) {
+        double x = store.posX()[i];
+        double y = store.posY()[i];
+        double m = store.mass()[i];
+        for (; ; depth++) {
+            int content = this.body[node];
+            //If there's not a body there already, put the body there.
+            if (content == EMPTY) {
+                this.body[node] = i;
+                this.comX[node] = x;
+                this.comY[node] = y;
+                this.mass[node] = m;
+                return;
+            }
+            //Too deep to be split, the node keeps all its bodies together
+            if (content != INTERNAL && depth >= MAX_DEPTH) {
+                this.body[node] = BUCKET;
+                this.aggregate(node, x, y, m);
+                return;
             }
+            //If the node is external and contains another body, move that
+            //body one level down and go on as an internal node
+            if (content >= 0) {
+                this.body[node] = INTERNAL;
+                int c = this.child(node, this.comX[node], this.comY[node]);
+                this.body[c] = content;
+                this.comX[c] = this.comX[node];
+                this.comY[c] = this.comY[node];
+                this.mass[c] = this.mass[node];
+            }
+            //Internal node: aggregate the body and go on in the right quadrant
+            this.aggregate(node, x, y, m);
+            node = this.child(node, x, y);
         }
-        //If the node is external and contains another body, create BHTrees
-        //where the bodies should go, update the node, and end
-        //(do not do anything recursively)
-        else if (this.isExternal(this)) {
-            Body c = this.body;
-            Quad northwest = this.quad.NW();
-            if (c.in(northwest)) {
-                if (this.NW == null) {
-                    this.NW = new BHTree(northwest);
-                }
-                NW.insert(c);
+    }
+
+    /**
+     * Builds the tree with all the bodies of the store which are inside the
+     * root region, which must have been set by
+     * {@link #reset(double, double, double)}. The bodies are sorted in
+     * Z-order, in parallel, so the ones of every node are a contiguous range:
+     * the nodes are created going down the ranges, and aggregate the bodies of
+     * their children on the way back up. The result is the tree the insertion
+     * of the bodies would give, but for the rounding of the borders of the
+     * nodes.
+     *
+     * @param store the bodies
+     * @param pool  the pool sorting the bodies, null to sort them on the
+     *              calling thread
+     */
+    public void build(BodyStore store, ForkJoinPool pool) {
+        int n = store.size();
+        if (this.inside.length < n) {
+            this.inside = new int[n];
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (this.contains(store.posX()[i], store.posY()[i])) {
+                this.inside[count++] = i;
+            }
+        }
+        double half = this.length[0] / 2;
+        this.morton.sort(store, this.inside, count, this.xmid[0] - half, this.ymid[0] + half, this.length[0], pool);
+        if (count > 0) {
+            this.build(store, 0, 0, count, 0);
+        }
+    }
+
+    /* Fills the node with the sorted bodies in [from, to) */
+    private void build(BodyStore store, int node, int from, int to, int depth) {
+        int[] order = this.morton.order();
+        if (to - from == 1) {
+            int i = order[from];
+            this.body[node] = i;
+            this.comX[node] = store.posX()[i];
+            this.comY[node] = store.posY()[i];
+            this.mass[node] = store.mass()[i];
+            return;
+        }
+        if (depth == MortonOrder.BITS) {
+            // the keys can not tell the bodies apart any more
+            for (int k = from; k < to; k++) {
+                this.insert(store, order[k], node, depth);
+            }
+            return;
+        }
+        this.body[node] = INTERNAL;
+        long[] keys = this.morton.keys();
+        int start = from;
+        for (int q = NW; q <= SE && start < to; q++) {
+            int end = upperBound(keys, start, to, depth, q);
+            if (end > start) {
+                int c = this.newChild(node, q);
+                this.build(store, c, start, end, depth + 1);
+                this.aggregate(node, this.comX[c], this.comY[c], this.mass[c]);
+            }
+            start = end;
+        }
+    }
+
+    /* First index in [from, to) whose quadrant at the depth is after q */
+    private static int upperBound(long[] keys, int from, int to, int depth, int q) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (MortonOrder.quadrant(keys[mid], depth) <= q) {
+                lo = mid + 1;
             } else {
-                Quad northeast = this.quad.NE();
-                if (c.in(northeast)) {
-                    if (this.NE == null) {
-                        this.NE = new BHTree(northeast);
-                    }
-                    NE.insert(c);
-                } else {
-                    Quad southeast = this.quad.SE();
-                    if (c.in(southeast)) {
-                        if (this.SE == null) {
-                            this.SE = new BHTree(southeast);
-                        }
-                        SE.insert(c);
-                    } else {
-                        Quad southwest = this.quad.SW();
-                        if (this.SW == null) {
-                            this.SW = new BHTree(southwest);
-                        }
-                        SW.insert(c);
-                    }
-                }
+                hi = mid;
             }
-            this.insert(b);
         }
+        return lo;
+    }
+
+    /**
+     * @return the number of bodies in the tree after the last
+     *         {@link #build(BodyStore, ForkJoinPool)}
+     */
+    public int numBodies() {
+        return this.morton.size();
+    }
+
+    /**
+     * @return the bodies of the tree after the last
+     *         {@link #build(BodyStore, ForkJoinPool)}, in Z-order: bodies
+     *         close in the order walk through almost the same nodes
+     */
+    public int[] bodies() {
+        return this.morton.order();
+    }
+
+    /**
+     * Adds to the body the force of the tree. Start at the main node of the
+     * tree, then recursively go each branch until either we reach an external
+     * node or we reach a node that is sufficiently far away that the external
+     * nodes would not matter much. A node is far enough when the ratio between
+     * its side and its distance is less than the opening angle theta. It only
+     * reads the tree, so it can be called by many threads at the same time for
+     * different bodies.
+     *
+     * @param store the bodies, the force is accumulated in the store
+     * @param i     the index of the body
+     * @param theta the opening angle, smaller is more accurate but slower
+     */
+    public void updateForce(BodyStore store, int i, double theta) {
+        this.updateForce(store, i, theta, 0, store.posX()[i], store.posY()[i]);
     }
 
-    //Start at the main node of the tree. Then, recursively go each branch
-    //Until either we reach an external node or we reach a node that is sufficiently
-    //far away that the external nodes would not matter much.
-    public void updateForce(Body b) {
-        if (this.isExternal(this)) {
-            if (this.body != b) b.addForce(this.body);
-        } else if (this.quad.length() / (this.body.distanceTo(b)) < 2) {
-            b.addForce(this.body);
+    private void updateForce(BodyStore store, int i, double theta, int node, double x, double y) {
+        int content = this.body[node];
+        if (content == EMPTY || content == i) {
+            return;
+        }
+        if (content >= 0) {
+            store.addForce(i, this.comX[node], this.comY[node], this.mass[node]);
+        } else if (content == BUCKET) {
+            if (this.contains(node, x, y)) {
+                // the body is part of the aggregate, remove it
+                double m = store.mass()[i];
+                double rest = this.mass[node] - m;
+                if (rest > 0) {
+                    store.addForce(i, (this.comX[node] * this.mass[node] - x * m) / rest,
+                            (this.comY[node] * this.mass[node] - y * m) / rest, rest);
+                }
+            } else {
+                store.addForce(i, this.comX[node], this.comY[node], this.mass[node]);
+            }
         } else {
-            if (this.NW != null) this.NW.updateForce(b);
-            if (this.SW != null) this.SW.updateForce(b);
-            if (this.SE != null) this.SE.updateForce(b);
-            if (this.NE != null) this.NE.updateForce(b);
+            double dx = this.comX[node] - x;
+            double dy = this.comY[node] - y;
+            if (this.length[node] < theta * Math.sqrt(dx * dx + dy * dy)) {
+                store.addForce(i, this.comX[node], this.comY[node], this.mass[node]);
+            } else {
+                for (int q = 4 * node; q < 4 * node + 4; q++) {
+                    if (this.children[q] >= 0) {
+                        this.updateForce(store, i, theta, this.children[q], x, y);
+                    }
+                }
+            }
         }
     }
 
-    // convert to string representation for output
-    public String toString() {
-        if (NE != null || NW != null || SW != null || SE != null) return "*" + body + "\n" + NW + NE + SW + SE;
-        else return " " + body + "\n";
+    /**
+     * @return the number of nodes currently in use
+     */
+    public int size() {
+        return this.count;
     }
 }
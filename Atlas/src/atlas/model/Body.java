@@ -89,6 +89,19 @@ public interface Body {
      */
     public void updatePos(double dt);
 
+    /**
+     * Sets position and velocity computed outside of the body (i.e. by an
+     * n-body algorithm) and advances everything else that depends on time, as
+     * {@link #updatePos(double)} does.
+     *
+     * @param x  the new x coordinate
+     * @param y  the new y coordinate
+     * @param vx the new horizontal velocity
+     * @param vy the new vertical velocity
+     * @param dt time elapsed since the last update, in seconds
+     */
+    public void setState(double x, double y, double vx, double vy, double dt);
+
     /**
      * Calculates the distance from an another body.
      *
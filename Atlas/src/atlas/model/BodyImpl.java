@@ -59,7 +59,13 @@ public class BodyImpl implements Body, java.io.Serializable {
 
     public BodyImpl(Body b) {
         this(b.getType(), generateId(), b.getImagePath(), b.getName(), b.getPosX(), b.getPosY(), b.getVelX(),
-                b.getVelY(), b.getMass(), b.getProperties());
+                b.getVelY(), b.getMass(), copyOf(b.getProperties()));
+    }
+
+    /* Copies get their own properties, the radius changes with collisions */
+    private static Properties copyOf(Properties p) {
+        return new Properties(p.getRadius(), p.getRotationPeriod(), p.getRotationAngle(),
+                p.getOrbitalPeriod().orElse(null), p.getParent().orElse(null), p.getTemperature().orElse(null));
     }
 
     private static long generateId() {
@@ -145,10 +151,17 @@ public class BodyImpl implements Body, java.io.Serializable {
 
     @Override
     public void updatePos(double dt) {
-        this.velx += dt * fx / mass;
-        this.vely += dt * fy / mass;
-        this.posx += dt * velx;
-        this.posy += dt * vely;
+        double vx = this.velx + dt * fx / mass;
+        double vy = this.vely + dt * fy / mass;
+        this.setState(this.posx + dt * vx, this.posy + dt * vy, vx, vy, dt);
+    }
+
+    @Override
+    public void setState(double x, double y, double vx, double vy, double dt) {
+        this.posx = x;
+        this.posy = y;
+        this.velx = vx;
+        this.vely = vy;
         // updates the rotation angle
         this.properties.updateRotation(dt);
         this.checkTrail();
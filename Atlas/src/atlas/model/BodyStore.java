@@ -0,0 +1,386 @@
+package atlas.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar (structure of arrays) storage of the simulated bodies, used by the
+ * n-body algorithms in their hot loops. Positions, velocities, forces, masses
+ * and radii are kept in contiguous primitive arrays, indexed from 0 to
+ * {@link #size()}, so that a step never goes through the {@link Body}
+ * interface.
+ * <p>
+ * The store is gathered from the bodies before a step ({@link #load(List)})
+ * and written back to them afterwards ({@link #flush()}), so the rest of the
+ * application (view, saves, editing) keeps working with plain bodies.
+ */
+public class BodyStore {
+
+    /**
+     * Softening parameter (just to avoid infinities), same as
+     * {@link BodyImpl#addForce(Body)}.
+     */
+    public static final double EPS = 1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private List<Body> bodies;
+    private int size;
+
+    private Body[] refs = new Body[0];
+    private double[] posX = new double[0];
+    private double[] posY = new double[0];
+    private double[] velX = new double[0];
+    private double[] velY = new double[0];
+    private double[] forceX = new double[0];
+    private double[] forceY = new double[0];
+    private double[] mass = new double[0];
+    private double[] radius = new double[0];
+    private boolean[] attracting = new boolean[0];
+    /* bodies whose force is needed, all of them after a load */
+    private boolean[] active = new boolean[0];
+    /* time advanced by each body since the last load */
+    private double[] elapsed = new double[0];
+
+    /* id -> index, built only when needed */
+    private Map<Long, Integer> idIndex = null;
+    private int generation;
+
+    /**
+     * Construct an empty store.
+     */
+    public BodyStore() {
+    }
+
+    /**
+     * Construct a store gathering the given bodies.
+     *
+     * @param bodies the bodies of the simulation
+     */
+    public BodyStore(List<Body> bodies) {
+        this.load(bodies);
+    }
+
+    /**
+     * Gathers the state of the given bodies into the arrays, growing them if
+     * needed. Forces are reset. The generation changes only if the bodies are
+     * not the same as the last time, in the same order and with the same
+     * masses.
+     *
+     * @param bodies the bodies of the simulation
+     */
+    public void load(List<Body> bodies) {
+        boolean changed = bodies != this.bodies || bodies.size() != this.size;
+        this.bodies = bodies;
+        this.size = bodies.size();
+        this.ensureCapacity(this.size);
+        int i = 0;
+        for (Body b : bodies) {
+            changed |= this.refs[i] != b || this.mass[i] != b.getMass();
+            this.gather(i++, b);
+        }
+        Arrays.fill(this.refs, this.size, this.refs.length, null);
+        if (changed) {
+            this.idIndex = null;
+            this.generation++;
+        }
+    }
+
+    private void gather(int i, Body b) {
+        this.refs[i] = b;
+        this.posX[i] = b.getPosX();
+        this.posY[i] = b.getPosY();
+        this.velX[i] = b.getVelX();
+        this.velY[i] = b.getVelY();
+        this.forceX[i] = 0;
+        this.forceY[i] = 0;
+        this.mass[i] = b.getMass();
+        this.radius[i] = b.getProperties().getRadius();
+        this.attracting[i] = b.isAttracting();
+        this.active[i] = true;
+        this.elapsed[i] = 0;
+    }
+
+    private void move(int from, int to) {
+        this.refs[to] = this.refs[from];
+        this.posX[to] = this.posX[from];
+        this.posY[to] = this.posY[from];
+        this.velX[to] = this.velX[from];
+        this.velY[to] = this.velY[from];
+        this.forceX[to] = this.forceX[from];
+        this.forceY[to] = this.forceY[from];
+        this.attracting[to] = this.attracting[from];
+        this.active[to] = this.active[from];
+        this.elapsed[to] = this.elapsed[from];
+    }
+
+    /**
+     * Removes the bodies which are not kept, from the store and from the list
+     * it has been loaded from, in a single pass without shifting the list
+     * once per body, then appends the added bodies to both. Masses and radii
+     * of the kept bodies are read again from them, as collisions change them.
+     * <p>
+     * The list must still hold the loaded bodies in the same order, although
+     * some of them may have been removed from it in the meantime.
+     *
+     * @param keep  the bodies to keep, by index
+     * @param added the bodies to append
+     */
+    public void compact(boolean[] keep, List<Body> added) {
+        List<Body> list = this.bodies;
+        int w = 0;
+        int i = 0;
+        for (int k = 0; k < list.size(); k++, i++) {
+            Body b = list.get(k);
+            while (this.refs[i] != b) {
+                i++;
+            }
+            if (keep[i]) {
+                this.move(i, w);
+                this.mass[w] = b.getMass();
+                this.radius[w] = b.getProperties().getRadius();
+                list.set(w++, b);
+            }
+        }
+        list.subList(w, list.size()).clear();
+        list.addAll(added);
+        this.ensureCapacity(w + added.size());
+        for (Body b : added) {
+            this.gather(w++, b);
+        }
+        this.size = w;
+        Arrays.fill(this.refs, this.size, this.refs.length, null);
+        this.idIndex = null;
+        this.generation++;
+    }
+
+    /**
+     * The generation changes every time bodies are added or removed, or their
+     * masses change. Until then the bodies, their order and their masses stay
+     * the same, so anything computed from them (but the positions) can be
+     * kept across the steps.
+     *
+     * @return the current generation of the store
+     */
+    public int generation() {
+        return this.generation;
+    }
+
+    /**
+     * Gathers again the bodies of the last loaded list, i.e. after bodies have
+     * been added or removed.
+     */
+    public void reload() {
+        this.load(this.bodies);
+    }
+
+    /**
+     * Writes the new positions and velocities back to the bodies that have
+     * been moved since the last load.
+     */
+    public void flush() {
+        for (int i = 0; i < this.size; i++) {
+            if (this.elapsed[i] != 0) {
+                this.refs[i].setState(this.posX[i], this.posY[i], this.velX[i], this.velY[i], this.elapsed[i]);
+                this.elapsed[i] = 0;
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= this.refs.length) {
+            return;
+        }
+        int capacity = Math.max(MIN_CAPACITY, Math.max(n, this.refs.length * 2));
+        this.refs = Arrays.copyOf(this.refs, capacity);
+        this.posX = Arrays.copyOf(this.posX, capacity);
+        this.posY = Arrays.copyOf(this.posY, capacity);
+        this.velX = Arrays.copyOf(this.velX, capacity);
+        this.velY = Arrays.copyOf(this.velY, capacity);
+        this.forceX = Arrays.copyOf(this.forceX, capacity);
+        this.forceY = Arrays.copyOf(this.forceY, capacity);
+        this.mass = Arrays.copyOf(this.mass, capacity);
+        this.radius = Arrays.copyOf(this.radius, capacity);
+        this.attracting = Arrays.copyOf(this.attracting, capacity);
+        this.active = Arrays.copyOf(this.active, capacity);
+        this.elapsed = Arrays.copyOf(this.elapsed, capacity);
+    }
+
+    /**
+     * @return the list the store has been loaded from
+     */
+    public List<Body> getBodies() {
+        return this.bodies;
+    }
+
+    /**
+     * @return the number of bodies in the store
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param i the index of the body
+     * @return the body stored at the given index
+     */
+    public Body get(int i) {
+        return this.refs[i];
+    }
+
+    /**
+     * Finds the index of a body through its id.
+     *
+     * @param b the body to look for
+     * @return the index of the body, -1 if it is not in the store
+     */
+    public int indexOf(Body b) {
+        if (this.idIndex == null) {
+            this.idIndex = new HashMap<>(this.size * 2);
+            for (int i = 0; i < this.size; i++) {
+                this.idIndex.put(this.refs[i].getId(), i);
+            }
+        }
+        Integer i = this.idIndex.get(b.getId());
+        return i == null ? -1 : i;
+    }
+
+    public double[] posX() {
+        return this.posX;
+    }
+
+    public double[] posY() {
+        return this.posY;
+    }
+
+    public double[] velX() {
+        return this.velX;
+    }
+
+    public double[] velY() {
+        return this.velY;
+    }
+
+    public double[] forceX() {
+        return this.forceX;
+    }
+
+    public double[] forceY() {
+        return this.forceY;
+    }
+
+    public double[] mass() {
+        return this.mass;
+    }
+
+    public double[] radius() {
+        return this.radius;
+    }
+
+    public boolean[] attracting() {
+        return this.attracting;
+    }
+
+    /**
+     * Bodies whose force must be computed. Integrators with individual time
+     * steps clear the bodies that are not due, the algorithms may skip them.
+     *
+     * @return the active flags, all true after a load
+     */
+    public boolean[] active() {
+        return this.active;
+    }
+
+    /**
+     * Resets the total force applied to every body.
+     */
+    public void resetForces() {
+        Arrays.fill(this.forceX, 0, this.size, 0);
+        Arrays.fill(this.forceY, 0, this.size, 0);
+    }
+
+    /**
+     * Adds to the body i the force exerted by a point mass, using Newton's law
+     * of gravity.
+     *
+     * @param i the body the force is applied to
+     * @param x the x coordinate of the point mass
+     * @param y the y coordinate of the point mass
+     * @param m the mass of the point mass
+     */
+    public void addForce(int i, double x, double y, double m) {
+        double dx = x - this.posX[i];
+        double dy = y - this.posY[i];
+        double dist = Math.sqrt(dx * dx + dy * dy);
+        double f = (BodyType.G * this.mass[i] * m) / (dist * dist + EPS);
+        this.forceX[i] += f * dx / dist;
+        this.forceY[i] += f * dy / dist;
+    }
+
+    /**
+     * Adds to the body i the force exerted by the body j.
+     *
+     * @param i the body the force is applied to
+     * @param j the attracting body
+     */
+    public void addForce(int i, int j) {
+        this.addForce(i, this.posX[j], this.posY[j], this.mass[j]);
+    }
+
+    /**
+     * Adds the gravitational force between the bodies i and j to both of them,
+     * with opposite directions.
+     *
+     * @param i the first body
+     * @param j the second body
+     */
+    public void addMutualForce(int i, int j) {
+        double dx = this.posX[j] - this.posX[i];
+        double dy = this.posY[j] - this.posY[i];
+        double dist = Math.sqrt(dx * dx + dy * dy);
+        double f = (BodyType.G * this.mass[i] * this.mass[j]) / (dist * dist + EPS);
+        double fx = f * dx / dist;
+        double fy = f * dy / dist;
+        this.forceX[i] += fx;
+        this.forceY[i] += fy;
+        this.forceX[j] -= fx;
+        this.forceY[j] -= fy;
+    }
+
+    /**
+     * Updates the position of the body i with its current force.
+     *
+     * @param i  the body to move
+     * @param dt time-stamp, in seconds
+     */
+    public void updatePos(int i, double dt) {
+        this.kick(i, dt);
+        this.drift(i, dt);
+    }
+
+    /**
+     * Updates the velocity of the body i with its current force.
+     *
+     * @param i  the body to accelerate
+     * @param dt duration of the kick, in seconds
+     */
+    public void kick(int i, double dt) {
+        this.velX[i] += dt * this.forceX[i] / this.mass[i];
+        this.velY[i] += dt * this.forceY[i] / this.mass[i];
+    }
+
+    /**
+     * Updates the position of the body i with its current velocity. The
+     * duration is added to the time advanced by the body.
+     *
+     * @param i  the body to move
+     * @param dt duration of the drift, in seconds
+     */
+    public void drift(int i, double dt) {
+        this.posX[i] += dt * this.velX[i];
+        this.posY[i] += dt * this.velY[i];
+        this.elapsed[i] += dt;
+    }
+}
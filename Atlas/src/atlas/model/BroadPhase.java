@@ -0,0 +1,122 @@
+package atlas.model;
+
+import java.util.Arrays;
+
+/**
+ * Broad phase of the collision detection: it finds, quickly, the pairs of
+ * bodies whose bounding boxes overlap. The pairs are only candidates, the
+ * exact test is left to the caller.
+ */
+public abstract class BroadPhase {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private int numPairs;
+    private int[] pairs = new int[0];
+    /* Circles around the paths of the bodies, for the swept search */
+    private double[] sweptX = new double[0];
+    private double[] sweptY = new double[0];
+    private double[] sweptR = new double[0];
+
+    /**
+     * Finds the pairs of bodies whose bounding boxes overlap, each pair once.
+     * Bodies with a position which is not finite are ignored.
+     *
+     * @param store the bodies
+     * @return the number of pairs found
+     */
+    public int findPairs(BodyStore store) {
+        return this.search(store, store.posX(), store.posY(), store.radius());
+    }
+
+    /**
+     * Finds the pairs of bodies which may touch while they move along a
+     * straight line, with their current velocity, for the given time: every
+     * body is replaced by a circle around the whole of its path.
+     *
+     * @param store the bodies
+     * @param dt    the time the bodies move for, in seconds
+     * @return the number of pairs found
+     */
+    public int findPairs(BodyStore store, double dt) {
+        int n = store.size();
+        if (this.sweptX.length < n) {
+            this.sweptX = new double[n];
+            this.sweptY = new double[n];
+            this.sweptR = new double[n];
+        }
+        double[] vx = store.velX();
+        double[] vy = store.velY();
+        double half = dt / 2;
+        for (int i = 0; i < n; i++) {
+            this.sweptX[i] = store.posX()[i] + vx[i] * half;
+            this.sweptY[i] = store.posY()[i] + vy[i] * half;
+            this.sweptR[i] = store.radius()[i] + Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]) * Math.abs(half);
+        }
+        return this.search(store, this.sweptX, this.sweptY, this.sweptR);
+    }
+
+    /**
+     * Finds the pairs of overlapping bounding boxes of the given circles, one
+     * for every body of the store.
+     *
+     * @param store the bodies
+     * @param x     the x coordinates of the centers
+     * @param y     the y coordinates of the centers
+     * @param r     the radii
+     * @return the number of pairs found
+     */
+    protected abstract int search(BodyStore store, double[] x, double[] y, double[] r);
+
+    /**
+     * @return the pairs found by the last search: the bodies of the pair k are
+     * at 2 * k and 2 * k + 1
+     */
+    public int[] pairs() {
+        return this.pairs;
+    }
+
+    /**
+     * Forgets the pairs of the last search.
+     */
+    protected void clearPairs() {
+        this.numPairs = 0;
+    }
+
+    /**
+     * Adds a pair to the result of the search.
+     *
+     * @param i the first body
+     * @param j the second body
+     */
+    protected void addPair(int i, int j) {
+        if (2 * this.numPairs == this.pairs.length) {
+            this.pairs = Arrays.copyOf(this.pairs, Math.max(MIN_CAPACITY, this.pairs.length * 2));
+        }
+        this.pairs[2 * this.numPairs] = i;
+        this.pairs[2 * this.numPairs + 1] = j;
+        this.numPairs++;
+    }
+
+    /**
+     * @return the number of pairs found so far
+     */
+    protected int numPairs() {
+        return this.numPairs;
+    }
+
+    /**
+     * @return whether the bounding boxes of the bodies i and j overlap
+     */
+    protected static boolean overlap(double[] x, double[] y, double[] r, int i, int j) {
+        double rr = r[i] + r[j];
+        return Math.abs(x[i] - x[j]) <= rr && Math.abs(y[i] - y[j]) <= rr;
+    }
+
+    /**
+     * @return whether the position is made of finite numbers
+     */
+    protected static boolean isFinite(double x, double y) {
+        return !Double.isNaN(x) && !Double.isInfinite(x) && !Double.isNaN(y) && !Double.isInfinite(y);
+    }
+}
@@ -0,0 +1,104 @@
+package atlas.model;
+
+import java.util.Arrays;
+
+/**
+ * Direct summation kernel: computes the softened gravitational accelerations
+ * of a block of targets against every source, one source at a time. The
+ * inner loop runs over the targets, stored in contiguous arrays, without
+ * branches nor method calls, so that the JIT compiler can turn it into SIMD
+ * instructions (several targets per instruction). The targets are handled in
+ * blocks small enough to stay in the processor's cache.
+ * <p>
+ * The scratch arrays are reused from one call to the next, a kernel must not
+ * be shared between threads.
+ */
+public class DirectSum {
+
+    /* Targets handled together, 4 arrays of 512 doubles fit in the L1 cache */
+    private static final int BLOCK = 512;
+
+    private int[] index = new int[0];      // store index of each target
+    private int[] slot = new int[0];       // target of each store index, -1 if none
+    private double[] tx = new double[0];   // position of the targets
+    private double[] ty = new double[0];
+    private double[] ax = new double[0];   // acceleration of the targets
+    private double[] ay = new double[0];
+
+    /**
+     * Adds to the selected bodies the forces of all the bodies of the store.
+     *
+     * @param store   the bodies
+     * @param targets the bodies the forces are applied to
+     */
+    public void addForces(BodyStore store, boolean[] targets) {
+        int n = store.size();
+        this.ensureCapacity(n);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            this.slot[i] = targets[i] ? count : -1;
+            if (targets[i]) {
+                this.index[count++] = i;
+            }
+        }
+        double[] x = store.posX();
+        double[] y = store.posY();
+        double[] m = store.mass();
+        for (int from = 0; from < count; from += BLOCK) {
+            int to = Math.min(count, from + BLOCK);
+            for (int k = from; k < to; k++) {
+                this.tx[k] = x[this.index[k]];
+                this.ty[k] = y[this.index[k]];
+            }
+            Arrays.fill(this.ax, from, to, 0);
+            Arrays.fill(this.ay, from, to, 0);
+            for (int j = 0; j < n; j++) {
+                // a body does not attract itself: the block is split around it
+                int self = this.slot[j];
+                if (self >= from && self < to) {
+                    accumulate(this.tx, this.ty, this.ax, this.ay, from, self, x[j], y[j], m[j]);
+                    accumulate(this.tx, this.ty, this.ax, this.ay, self + 1, to, x[j], y[j], m[j]);
+                } else {
+                    accumulate(this.tx, this.ty, this.ax, this.ay, from, to, x[j], y[j], m[j]);
+                }
+            }
+            double[] fx = store.forceX();
+            double[] fy = store.forceY();
+            for (int k = from; k < to; k++) {
+                int i = this.index[k];
+                fx[i] += m[i] * this.ax[k];
+                fy[i] += m[i] * this.ay[k];
+            }
+        }
+    }
+
+    /*
+     * Adds to the targets from..to the acceleration of a point mass, same law
+     * as BodyStore.addForce. Kept free of branches and calls so that it is
+     * vectorized.
+     */
+    private static void accumulate(double[] tx, double[] ty, double[] ax, double[] ay, int from, int to,
+                                   double sx, double sy, double sm) {
+        double gm = BodyType.G * sm;
+        for (int k = from; k < to; k++) {
+            double dx = sx - tx[k];
+            double dy = sy - ty[k];
+            double d2 = dx * dx + dy * dy;
+            double s = gm / ((d2 + BodyStore.EPS) * Math.sqrt(d2));
+            ax[k] += s * dx;
+            ay[k] += s * dy;
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= this.index.length) {
+            return;
+        }
+        this.index = new int[n];
+        this.slot = new int[n];
+        this.tx = new double[n];
+        this.ty = new double[n];
+        this.ax = new double[n];
+        this.ay = new double[n];
+    }
+}
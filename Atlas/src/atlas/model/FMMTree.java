@@ -0,0 +1,350 @@
+package atlas.model;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree used by the fast multipole method. Every cell stores its total mass,
+ * center of mass and radius (the farthest of its bodies from the center of
+ * mass), plus a local Taylor expansion of the gravitational field around the
+ * center of mass: the acceleration, its gradient and its second derivatives.
+ * <p>
+ * Cells that are far enough from each other interact as a whole, each one
+ * adding the other's field to its expansion, the remaining bodies interact
+ * directly. The expansions are then passed down to the leaves and evaluated at
+ * every body. Like {@link BHTree}, cells are kept in parallel primitive arrays
+ * that are reused at every step, and bodies are referenced by their index in a
+ * {@link BodyStore}.
+ */
+public class FMMTree {
+
+    /* Cells with fewer bodies are not split */
+    private static final int LEAF_SIZE = 16;
+    /* Deeper cells are not split any more */
+    private static final int MAX_DEPTH = 64;
+    private static final int MIN_CAPACITY = 64;
+
+    /* body indices, every cell owns the segment [first, first + size) */
+    private int[] order = new int[0];
+    private int[] scratch = new int[0];
+
+    private int count;
+    private int[] first = new int[0];
+    private int[] size = new int[0];
+    private int[] children = new int[0];       // 4 per cell, -1 if absent
+    private double[] mass = new double[0];
+    private double[] comX = new double[0];
+    private double[] comY = new double[0];
+    private double[] radius = new double[0];
+
+    /* local expansion: acceleration, gradient (xx, xy, yy), second derivatives (xxx, xxy, xyy, yyy) */
+    private double[] ax = new double[0];
+    private double[] ay = new double[0];
+    private double[] jxx = new double[0];
+    private double[] jxy = new double[0];
+    private double[] jyy = new double[0];
+    private double[] hxxx = new double[0];
+    private double[] hxxy = new double[0];
+    private double[] hxyy = new double[0];
+    private double[] hyyy = new double[0];
+
+    private BodyStore store;
+    private double theta;
+
+    /**
+     * Builds the tree with the bodies of the store. Bodies with a position that
+     * is not finite are left out.
+     *
+     * @param store the bodies
+     */
+    public void build(BodyStore store) {
+        this.store = store;
+        this.count = 0;
+        double[] x = store.posX();
+        double[] y = store.posY();
+        if (this.order.length < store.size()) {
+            this.order = new int[store.size()];
+            this.scratch = new int[store.size()];
+        }
+        int n = 0;
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < store.size(); i++) {
+            if (!Double.isNaN(x[i]) && !Double.isInfinite(x[i]) && !Double.isNaN(y[i]) && !Double.isInfinite(y[i])) {
+                this.order[n++] = i;
+                minX = Math.min(minX, x[i]);
+                maxX = Math.max(maxX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        double half = Math.max(maxX - minX, maxY - minY) / 2;
+        this.split(this.newCell(0, n), (minX + maxX) / 2, (minY + maxY) / 2, half, 0);
+    }
+
+    private int newCell(int first, int size) {
+        if (this.count == this.first.length) {
+            this.grow();
+        }
+        int c = this.count++;
+        this.first[c] = first;
+        this.size[c] = size;
+        Arrays.fill(this.children, 4 * c, 4 * c + 4, -1);
+        this.ax[c] = 0;
+        this.ay[c] = 0;
+        this.jxx[c] = 0;
+        this.jxy[c] = 0;
+        this.jyy[c] = 0;
+        this.hxxx[c] = 0;
+        this.hxxy[c] = 0;
+        this.hxyy[c] = 0;
+        this.hyyy[c] = 0;
+        return c;
+    }
+
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, this.first.length * 2);
+        this.first = Arrays.copyOf(this.first, capacity);
+        this.size = Arrays.copyOf(this.size, capacity);
+        this.children = Arrays.copyOf(this.children, 4 * capacity);
+        this.mass = Arrays.copyOf(this.mass, capacity);
+        this.comX = Arrays.copyOf(this.comX, capacity);
+        this.comY = Arrays.copyOf(this.comY, capacity);
+        this.radius = Arrays.copyOf(this.radius, capacity);
+        this.ax = Arrays.copyOf(this.ax, capacity);
+        this.ay = Arrays.copyOf(this.ay, capacity);
+        this.jxx = Arrays.copyOf(this.jxx, capacity);
+        this.jxy = Arrays.copyOf(this.jxy, capacity);
+        this.jyy = Arrays.copyOf(this.jyy, capacity);
+        this.hxxx = Arrays.copyOf(this.hxxx, capacity);
+        this.hxxy = Arrays.copyOf(this.hxxy, capacity);
+        this.hxyy = Arrays.copyOf(this.hxyy, capacity);
+        this.hyyy = Arrays.copyOf(this.hyyy, capacity);
+    }
+
+    private boolean isLeaf(int c) {
+        return this.children[4 * c] < 0 && this.children[4 * c + 1] < 0 && this.children[4 * c + 2] < 0
+                && this.children[4 * c + 3] < 0;
+    }
+
+    /* Splits the cell in quadrants, sorting its segment, then computes its mass and radius */
+    private void split(int c, double xmid, double ymid, double half, int depth) {
+        double[] x = this.store.posX();
+        double[] y = this.store.posY();
+        double[] m = this.store.mass();
+        int from = this.first[c];
+        int to = from + this.size[c];
+        if (this.size[c] > LEAF_SIZE && depth < MAX_DEPTH) {
+            // counting sort of the segment by quadrant, through the scratch array
+            int start = from;
+            for (int q = 0; q < 4; q++) {
+                int next = start;
+                for (int k = from; k < to; k++) {
+                    int i = this.order[k];
+                    if (quadrant(x[i], y[i], xmid, ymid) == q) {
+                        this.scratch[next++] = i;
+                    }
+                }
+                if (next > start) {
+                    int child = this.newCell(start, next - start);
+                    this.children[4 * c + q] = child;
+                }
+                start = next;
+            }
+            System.arraycopy(this.scratch, from, this.order, from, to - from);
+            for (int q = 0; q < 4; q++) {
+                int child = this.children[4 * c + q];
+                if (child >= 0) {
+                    this.split(child, xmid + ((q & 1) == 0 ? -half / 2 : half / 2),
+                            ymid + ((q & 2) == 0 ? -half / 2 : half / 2), half / 2, depth + 1);
+                }
+            }
+        }
+        // mass and center of mass
+        double sum = 0, sumX = 0, sumY = 0;
+        for (int k = from; k < to; k++) {
+            int i = this.order[k];
+            sum += m[i];
+            sumX += m[i] * x[i];
+            sumY += m[i] * y[i];
+        }
+        this.mass[c] = sum;
+        this.comX[c] = sum > 0 ? sumX / sum : xmid;
+        this.comY[c] = sum > 0 ? sumY / sum : ymid;
+        // radius: bodies for the leaves, children for the others
+        double r = 0;
+        if (this.isLeaf(c)) {
+            for (int k = from; k < to; k++) {
+                int i = this.order[k];
+                double dx = x[i] - this.comX[c];
+                double dy = y[i] - this.comY[c];
+                r = Math.max(r, Math.sqrt(dx * dx + dy * dy));
+            }
+        } else {
+            for (int q = 4 * c; q < 4 * c + 4; q++) {
+                int child = this.children[q];
+                if (child >= 0) {
+                    double dx = this.comX[child] - this.comX[c];
+                    double dy = this.comY[child] - this.comY[c];
+                    r = Math.max(r, Math.sqrt(dx * dx + dy * dy) + this.radius[child]);
+                }
+            }
+        }
+        this.radius[c] = r;
+    }
+
+    /* 0 = SW, 1 = SE, 2 = NW, 3 = NE */
+    private static int quadrant(double x, double y, double xmid, double ymid) {
+        return (x < xmid ? 0 : 1) + (y < ymid ? 0 : 2);
+    }
+
+    /**
+     * Accumulates in the store the force applied to every body of the tree.
+     *
+     * @param theta the opening angle, two cells interact as a whole when the
+     *              sum of their radii is less than theta times their distance
+     */
+    public void updateForces(double theta) {
+        if (this.count == 0) {
+            return;
+        }
+        this.theta = theta;
+        this.interact(0);
+        // passes the expansions down to the leaves
+        for (int c = 0; c < this.count; c++) {
+            for (int q = 4 * c; q < 4 * c + 4; q++) {
+                if (this.children[q] >= 0) {
+                    this.shift(c, this.children[q]);
+                }
+            }
+            if (this.isLeaf(c)) {
+                this.evaluate(c);
+            }
+        }
+    }
+
+    /* Interactions within a cell */
+    private void interact(int a) {
+        if (this.isLeaf(a)) {
+            this.direct(a, a);
+            return;
+        }
+        for (int q = 4 * a; q < 4 * a + 4; q++) {
+            if (this.children[q] >= 0) {
+                this.interact(this.children[q]);
+                for (int p = q + 1; p < 4 * a + 4; p++) {
+                    if (this.children[p] >= 0) {
+                        this.interact(this.children[q], this.children[p]);
+                    }
+                }
+            }
+        }
+    }
+
+    /* Interactions between two different cells */
+    private void interact(int a, int b) {
+        double dx = this.comX[a] - this.comX[b];
+        double dy = this.comY[a] - this.comY[b];
+        double r = this.radius[a] + this.radius[b];
+        if (r * r < this.theta * this.theta * (dx * dx + dy * dy)) {
+            this.addField(a, this.comX[b], this.comY[b], this.mass[b]);
+            this.addField(b, this.comX[a], this.comY[a], this.mass[a]);
+        } else if (this.isLeaf(a) && this.isLeaf(b)) {
+            this.direct(a, b);
+        } else if (this.isLeaf(b) || !this.isLeaf(a) && this.radius[a] >= this.radius[b]) {
+            for (int q = 4 * a; q < 4 * a + 4; q++) {
+                if (this.children[q] >= 0) {
+                    this.interact(this.children[q], b);
+                }
+            }
+        } else {
+            for (int q = 4 * b; q < 4 * b + 4; q++) {
+                if (this.children[q] >= 0) {
+                    this.interact(a, this.children[q]);
+                }
+            }
+        }
+    }
+
+    /* Body to body interactions between two leaves, or within a leaf */
+    private void direct(int a, int b) {
+        int endA = this.first[a] + this.size[a];
+        int endB = this.first[b] + this.size[b];
+        for (int k = this.first[a]; k < endA; k++) {
+            for (int l = a == b ? k + 1 : this.first[b]; l < endB; l++) {
+                this.store.addMutualForce(this.order[k], this.order[l]);
+            }
+        }
+    }
+
+    /* Adds to the expansion of cell c the field of a point mass */
+    private void addField(int c, double x, double y, double m) {
+        double dx = this.comX[c] - x;
+        double dy = this.comY[c] - y;
+        double r2 = dx * dx + dy * dy;
+        double r = Math.sqrt(r2);
+        double g3 = BodyType.G * m / (r2 * r);
+        double g5 = 3 * g3 / r2;
+        double g7 = 5 * g5 / r2;
+        this.ax[c] -= g3 * dx;
+        this.ay[c] -= g3 * dy;
+        this.jxx[c] += g5 * dx * dx - g3;
+        this.jxy[c] += g5 * dx * dy;
+        this.jyy[c] += g5 * dy * dy - g3;
+        this.hxxx[c] += 3 * g5 * dx - g7 * dx * dx * dx;
+        this.hxxy[c] += g5 * dy - g7 * dx * dx * dy;
+        this.hxyy[c] += g5 * dx - g7 * dx * dy * dy;
+        this.hyyy[c] += 3 * g5 * dy - g7 * dy * dy * dy;
+    }
+
+    /* Adds the expansion of the parent, moved to the child's center, to the child's expansion */
+    private void shift(int parent, int child) {
+        double ux = this.comX[child] - this.comX[parent];
+        double uy = this.comY[child] - this.comY[parent];
+        this.ax[child] += this.fieldX(parent, ux, uy);
+        this.ay[child] += this.fieldY(parent, ux, uy);
+        this.jxx[child] += this.jxx[parent] + this.hxxx[parent] * ux + this.hxxy[parent] * uy;
+        this.jxy[child] += this.jxy[parent] + this.hxxy[parent] * ux + this.hxyy[parent] * uy;
+        this.jyy[child] += this.jyy[parent] + this.hxyy[parent] * ux + this.hyyy[parent] * uy;
+        this.hxxx[child] += this.hxxx[parent];
+        this.hxxy[child] += this.hxxy[parent];
+        this.hxyy[child] += this.hxyy[parent];
+        this.hyyy[child] += this.hyyy[parent];
+    }
+
+    /* Applies the expansion of a leaf to its bodies */
+    private void evaluate(int c) {
+        double[] x = this.store.posX();
+        double[] y = this.store.posY();
+        double[] m = this.store.mass();
+        int end = this.first[c] + this.size[c];
+        for (int k = this.first[c]; k < end; k++) {
+            int i = this.order[k];
+            double ux = x[i] - this.comX[c];
+            double uy = y[i] - this.comY[c];
+            this.store.forceX()[i] += m[i] * this.fieldX(c, ux, uy);
+            this.store.forceY()[i] += m[i] * this.fieldY(c, ux, uy);
+        }
+    }
+
+    /* Horizontal acceleration of the expansion of c, at the given offset from its center */
+    private double fieldX(int c, double ux, double uy) {
+        return this.ax[c] + this.jxx[c] * ux + this.jxy[c] * uy
+                + (this.hxxx[c] * ux * ux + 2 * this.hxxy[c] * ux * uy + this.hxyy[c] * uy * uy) / 2;
+    }
+
+    /* Vertical acceleration of the expansion of c, at the given offset from its center */
+    private double fieldY(int c, double ux, double uy) {
+        return this.ay[c] + this.jxy[c] * ux + this.jyy[c] * uy
+                + (this.hxxy[c] * ux * ux + 2 * this.hxyy[c] * ux * uy + this.hyyy[c] * uy * uy) / 2;
+    }
+
+    /**
+     * @return the number of cells currently in use
+     */
+    public int size() {
+        return this.count;
+    }
+}
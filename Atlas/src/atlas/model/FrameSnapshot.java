@@ -0,0 +1,217 @@
+package atlas.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The state of the bodies at the end of an update, as the view draws it:
+ * positions, radii, rotations and ids are copied in arrays, so the simulation
+ * can go on changing the bodies while the frame is drawn. A snapshot never
+ * changes once created, it can be handed to another thread without locks.
+ * <p>
+ * The bodies themselves are kept only as references, to select them and to
+ * read what the simulation does not change at every update (image, trail).
+ * <p>
+ * The view can draw a frame between two snapshots, see
+ * {@link #interpolate(FrameSnapshot, double)}, so the simulation does not need
+ * to be updated for every frame drawn.
+ */
+public final class FrameSnapshot {
+
+    private final int size;
+    private final long[] ids;
+    private final double[] posX;
+    private final double[] posY;
+    private final double[] radius;
+    private final double[] rotation;
+    private final String[] names;
+    private final BodyType[] types;
+    private final Body[] bodies;
+    private final String time;
+    private final long created;
+
+    /**
+     * Copies the state of the bodies. It must be called by the thread which
+     * updates them.
+     *
+     * @param bodies the bodies
+     * @param time   the time of the simulation
+     */
+    public FrameSnapshot(List<Body> bodies, String time) {
+        this.size = bodies.size();
+        this.ids = new long[this.size];
+        this.posX = new double[this.size];
+        this.posY = new double[this.size];
+        this.radius = new double[this.size];
+        this.rotation = new double[this.size];
+        this.names = new String[this.size];
+        this.types = new BodyType[this.size];
+        this.bodies = new Body[this.size];
+        this.time = time;
+        this.created = System.nanoTime();
+        int i = 0;
+        for (Body b : bodies) {
+            this.ids[i] = b.getId();
+            this.posX[i] = b.getPosX();
+            this.posY[i] = b.getPosY();
+            this.radius[i] = b.getProperties().getRadius();
+            this.rotation[i] = b.getProperties().getRotationAngle();
+            this.names[i] = b.getName();
+            this.types[i] = b.getType();
+            this.bodies[i] = b;
+            i++;
+        }
+    }
+
+    /* A copy of the snapshot, with its own positions and rotations */
+    private FrameSnapshot(FrameSnapshot s) {
+        this.size = s.size;
+        this.ids = s.ids;
+        this.posX = s.posX.clone();
+        this.posY = s.posY.clone();
+        this.radius = s.radius;
+        this.rotation = s.rotation.clone();
+        this.names = s.names;
+        this.types = s.types;
+        this.bodies = s.bodies;
+        this.time = s.time;
+        this.created = s.created;
+    }
+
+    /**
+     * The bodies between a previous snapshot and this one: positions and
+     * rotations are interpolated linearly, the rest is taken from this one.
+     * The bodies which are not in the previous snapshot are where they are in
+     * this one.
+     *
+     * @param previous the previous snapshot
+     * @param alpha    the fraction of the way from the previous snapshot to
+     *                 this one, from 0 to 1
+     * @return the interpolated snapshot
+     */
+    public FrameSnapshot interpolate(FrameSnapshot previous, double alpha) {
+        FrameSnapshot f = new FrameSnapshot(this);
+        Map<Long, Integer> index = null;
+        for (int i = 0; i < this.size; i++) {
+            int j = i;
+            // the bodies are usually in the same order, the map is for the others
+            if (j >= previous.size || previous.ids[j] != this.ids[i]) {
+                if (index == null) {
+                    index = new HashMap<>();
+                    for (int k = 0; k < previous.size; k++) {
+                        index.put(previous.ids[k], k);
+                    }
+                }
+                j = index.getOrDefault(this.ids[i], -1);
+            }
+            if (j >= 0) {
+                f.posX[i] = previous.posX[j] + alpha * (this.posX[i] - previous.posX[j]);
+                f.posY[i] = previous.posY[j] + alpha * (this.posY[i] - previous.posY[j]);
+                // the angles are in degrees, from 0 to 360, the shortest way round
+                double turn = this.rotation[i] - previous.rotation[j];
+                turn -= 360 * Math.rint(turn / 360);
+                f.rotation[i] = previous.rotation[j] + alpha * turn;
+            }
+        }
+        return f;
+    }
+
+    /**
+     * @return when the snapshot was taken, as given by {@link System#nanoTime()}
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * @return the number of bodies
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the time of the simulation
+     */
+    public String getTime() {
+        return this.time;
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the id of the body
+     */
+    public long getId(int i) {
+        return this.ids[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the x coordinate of the body
+     */
+    public double getPosX(int i) {
+        return this.posX[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the y coordinate of the body
+     */
+    public double getPosY(int i) {
+        return this.posY[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the radius of the body
+     */
+    public double getRadius(int i) {
+        return this.radius[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the rotation angle of the body
+     */
+    public double getRotationAngle(int i) {
+        return this.rotation[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the name of the body
+     */
+    public String getName(int i) {
+        return this.names[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the type of the body
+     */
+    public BodyType getType(int i) {
+        return this.types[i];
+    }
+
+    /**
+     * @param i the index of a body
+     * @return the body itself, whose state may have changed since the snapshot
+     */
+    public Body getBody(int i) {
+        return this.bodies[i];
+    }
+
+    /**
+     * @param id the id of a body
+     * @return the index of the body, -1 if it is not in the snapshot
+     */
+    public int indexOf(long id) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -2,6 +2,7 @@ package atlas.model;
 
 import atlas.model.rules.Algorithm;
 import atlas.model.rules.CollisionStrategy;
+import atlas.model.rules.Integrator;
 
 import java.util.List;
 
@@ -54,6 +55,31 @@ public interface Model {
      */
     public void setCollsion(CollisionStrategy collision);
 
+    /**
+     * Changes how the bodies are moved along a time step.
+     *
+     * @param integrator the new integrator
+     */
+    public void setIntegrator(Integrator integrator);
+
+    /**
+     * @return true if the integrator keeps its accuracy with longer time steps
+     */
+    public boolean isStepAdaptive();
+
+    /**
+     * Changes how the candidate pairs of the collision detection are found.
+     *
+     * @param detection the new broad phase
+     */
+    public void setDetection(Algorithm.Detection detection);
+
+    /**
+     * Enables or disables the continuous collision detection, which checks
+     * the whole path of the bodies during a step.
+     */
+    public void toggleContinuousDetection();
+
     /**
      * @return The clock of the simulation
      */
@@ -3,6 +3,7 @@ package atlas.model;
 import atlas.model.rules.Algorithm;
 import atlas.model.rules.AlgorithmBarnesHut;
 import atlas.model.rules.CollisionStrategy;
+import atlas.model.rules.Integrator;
 import atlas.utils.Pair;
 
 import java.util.ArrayList;
@@ -18,6 +19,7 @@ public class ModelImpl implements Model, java.io.Serializable {
     private Algorithm alg = new AlgorithmBarnesHut();
     private List<Body> bodies = new ArrayList<>();
     private SimClock clock = new SimClock();
+    private transient BodyStore store;
 
     /**
      * Construct an empty Model.
@@ -46,14 +48,28 @@ public class ModelImpl implements Model, java.io.Serializable {
     @Override
     public void updateSim(double sec) {
         // update bodies position
-        this.bodies = this.alg.exceuteUpdate(bodies, sec);
+        BodyStore s = this.getStore();
+        s.load(this.bodies);
+        this.alg.exceuteUpdate(s, sec);
+        s.flush();
         // update clock/date
         this.clock.update((long) sec);
     }
 
+    /* The store is not serialized, it is rebuilt after loading */
+    private BodyStore getStore() {
+        if (this.store == null) {
+            this.store = new BodyStore();
+        }
+        return this.store;
+    }
+
     @Override
     public void setAlgorithm(Algorithm algorithm) {
         algorithm.setCollisionStrategy(alg.getCollisionStrategy());
+        algorithm.setIntegrator(alg.getIntegrator());
+        algorithm.setDetection(alg.getDetection());
+        algorithm.setContinuousDetection(alg.isContinuousDetection());
         this.alg = algorithm;
     }
 
@@ -62,6 +78,26 @@ public class ModelImpl implements Model, java.io.Serializable {
         this.alg.setCollisionStrategy(collision);
     }
 
+    @Override
+    public void setIntegrator(Integrator integrator) {
+        this.alg.setIntegrator(integrator);
+    }
+
+    @Override
+    public boolean isStepAdaptive() {
+        return this.alg.getIntegrator().isAdaptive();
+    }
+
+    @Override
+    public void setDetection(Algorithm.Detection detection) {
+        this.alg.setDetection(detection);
+    }
+
+    @Override
+    public void toggleContinuousDetection() {
+        this.alg.setContinuousDetection(!this.alg.isContinuousDetection());
+    }
+
     /**
      * Calculates the circural velocity in a circular orbit, formula: v = sqrt(
      * (G*M) / R )
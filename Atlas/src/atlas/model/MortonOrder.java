@@ -0,0 +1,216 @@
+package atlas.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Sorts bodies along the Z-order (Morton) curve of a square region: the
+ * region is split in quadrants again and again, and the bodies of a quadrant
+ * come before the ones of the next quadrant, at every level. Bodies close in
+ * the order are close in space, and every quadrant is a contiguous range of
+ * the order, so a quadtree can be built from it without inserting the bodies
+ * one by one.
+ * <p>
+ * The keys interleave the bits of the coordinates, the quadrants of a level
+ * are ordered NW, NE, SW, SE. They are sorted by a least significant digit
+ * radix sort, whose passes are split in chunks run by the workers of a pool.
+ * The arrays are reused from one call to the next.
+ */
+public class MortonOrder {
+
+    /**
+     * Bits of every coordinate in a key, that is the levels of quadrants the
+     * keys tell apart.
+     */
+    public static final int BITS = 32;
+
+    private static final int DIGIT = 8;
+    private static final int RADIX = 1 << DIGIT;
+    /* Smallest chunk of a parallel pass */
+    private static final int MIN_CHUNK = 4096;
+
+    private int count;
+    private long[] keys = new long[0];
+    private int[] order = new int[0];
+    private long[] tmpKeys = new long[0];
+    private int[] tmpOrder = new int[0];
+
+    /**
+     * Sorts the given bodies in the Z-order of a square region.
+     *
+     * @param store  the bodies
+     * @param bodies the indices of the bodies to sort, all inside the region
+     * @param count  the number of indices
+     * @param xmin   x coordinate of the west side of the region
+     * @param ymax   y coordinate of the north side of the region
+     * @param length the side of the region
+     * @param pool   the pool to use, null to run on the calling thread
+     */
+    public void sort(BodyStore store, int[] bodies, int count, double xmin, double ymax, double length,
+            ForkJoinPool pool) {
+        this.ensureCapacity(count);
+        this.count = count;
+        System.arraycopy(bodies, 0, this.order, 0, count);
+        double[] x = store.posX();
+        double[] y = store.posY();
+        double scale = Math.scalb(1.0, BITS) / length;
+        int chunks = chunks(pool, count);
+        forEach(pool, chunks, c -> {
+            for (int k = from(c, chunks, count); k < from(c + 1, chunks, count); k++) {
+                int i = this.order[k];
+                // rows are counted from the north side, as north comes first
+                this.keys[k] = interleave(quantize((ymax - y[i]) * scale), quantize((x[i] - xmin) * scale));
+            }
+        });
+        this.radixSort(pool, chunks);
+    }
+
+    /**
+     * @return the number of bodies sorted by the last call
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @return the indices of the bodies, in Z-order
+     */
+    public int[] order() {
+        return this.order;
+    }
+
+    /**
+     * @return the keys of the bodies, in the same order
+     */
+    public long[] keys() {
+        return this.keys;
+    }
+
+    /**
+     * The quadrant of a key at a given level.
+     *
+     * @param key   the key of a body
+     * @param level the level, 0 for the quadrants of the whole region
+     * @return the quadrant, 0 to 3 as NW, NE, SW, SE
+     */
+    public static int quadrant(long key, int level) {
+        return (int) (key >>> (2 * (BITS - 1 - level))) & 3;
+    }
+
+    private static long quantize(double coord) {
+        long q = (long) coord;
+        return Math.max(0, Math.min(q, (1L << BITS) - 1));
+    }
+
+    /* The bits of row and column, alternated, the row first */
+    private static long interleave(long row, long column) {
+        return spread(row) << 1 | spread(column);
+    }
+
+    /* Moves the 32 low bits to the even positions */
+    private static long spread(long v) {
+        v &= 0xFFFFFFFFL;
+        v = (v | v << 16) & 0x0000FFFF0000FFFFL;
+        v = (v | v << 8) & 0x00FF00FF00FF00FFL;
+        v = (v | v << 4) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | v << 2) & 0x3333333333333333L;
+        v = (v | v << 1) & 0x5555555555555555L;
+        return v;
+    }
+
+    /*
+     * Stable passes over the digits, from the lowest: every chunk counts its
+     * digits, the counts give every chunk its place for every digit, then the
+     * chunks scatter their bodies in parallel. Passes where all the keys have
+     * the same digit are skipped.
+     */
+    private void radixSort(ForkJoinPool pool, int chunks) {
+        int n = this.count;
+        int[][] counts = new int[chunks][RADIX];
+        for (int shift = 0; shift < 2 * BITS; shift += DIGIT) {
+            int s = shift;
+            forEach(pool, chunks, c -> {
+                int[] cnt = counts[c];
+                Arrays.fill(cnt, 0);
+                for (int k = from(c, chunks, n); k < from(c + 1, chunks, n); k++) {
+                    cnt[(int) (this.keys[k] >>> s) & (RADIX - 1)]++;
+                }
+            });
+            int pos = 0;
+            boolean skip = false;
+            for (int d = 0; d < RADIX; d++) {
+                int total = 0;
+                for (int c = 0; c < chunks; c++) {
+                    int cnt = counts[c][d];
+                    counts[c][d] = pos + total;
+                    total += cnt;
+                }
+                skip |= total == n;
+                pos += total;
+            }
+            if (skip) {
+                continue;
+            }
+            forEach(pool, chunks, c -> {
+                int[] next = counts[c];
+                for (int k = from(c, chunks, n); k < from(c + 1, chunks, n); k++) {
+                    int p = next[(int) (this.keys[k] >>> s) & (RADIX - 1)]++;
+                    this.tmpKeys[p] = this.keys[k];
+                    this.tmpOrder[p] = this.order[k];
+                }
+            });
+            long[] k = this.keys;
+            this.keys = this.tmpKeys;
+            this.tmpKeys = k;
+            int[] o = this.order;
+            this.order = this.tmpOrder;
+            this.tmpOrder = o;
+        }
+    }
+
+    private static int chunks(ForkJoinPool pool, int count) {
+        if (pool == null) {
+            return 1;
+        }
+        return Math.max(1, Math.min(pool.getParallelism(), count / MIN_CHUNK));
+    }
+
+    private static int from(int chunk, int chunks, int count) {
+        return (int) ((long) chunk * count / chunks);
+    }
+
+    /* Runs the action for every chunk, on the workers of the pool */
+    private static void forEach(ForkJoinPool pool, int chunks, IntConsumer action) {
+        if (chunks == 1) {
+            action.accept(0);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            tasks.add(ForkJoinTask.adapt(() -> action.accept(chunk)));
+        }
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> {
+                ForkJoinTask.invokeAll(tasks);
+            }));
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= this.keys.length) {
+            return;
+        }
+        int capacity = Math.max(n, this.keys.length * 2);
+        this.keys = new long[capacity];
+        this.order = new int[capacity];
+        this.tmpKeys = new long[capacity];
+        this.tmpOrder = new int[capacity];
+    }
+}
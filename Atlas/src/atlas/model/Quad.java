@@ -14,6 +14,15 @@ public class Quad {
         this.length = length;
     }
 
+    //Where is the center of this quadrant?
+    public double getXmid() {
+        return xmid;
+    }
+
+    public double getYmid() {
+        return ymid;
+    }
+
     //How long is this quadrant?
     public double length() {
         return length;
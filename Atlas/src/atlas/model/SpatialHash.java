@@ -0,0 +1,145 @@
+package atlas.model;
+
+import java.util.Arrays;
+
+/**
+ * Broad phase of the collision detection: uniform grids, stored in a hash
+ * table, which find in linear time the pairs of bodies whose bounding boxes
+ * overlap. The grids are sized from the radii of the bodies: there is one grid
+ * for every power of two multiple of the smallest diameter, and every body is
+ * put, by its center, in the finest grid whose cells are at least as large as
+ * its diameter. A body then meets the bodies of its own and of the coarser
+ * grids in the 3x3 cells around its center, so a few large bodies (i.e. stars
+ * among asteroids) do not make the cells of the small ones large as well.
+ * <p>
+ * The arrays are reused from one call to the next.
+ */
+public class SpatialHash extends BroadPhase {
+
+    private static final int MAX_LEVELS = 64;
+    private static final int MIN_CAPACITY = 64;
+
+    private double base;
+    private final boolean[] usedLevel = new boolean[MAX_LEVELS];
+    /* Grid and cell of every body, level -1 if it is not in the grids */
+    private int[] level = new int[0];
+    private long[] cellX = new long[0];
+    private long[] cellY = new long[0];
+    /* Bodies sorted by the hash of their cell, the ones of the bucket h start at start[h] */
+    private int[] sorted = new int[0];
+    private int[] start = new int[0];
+    private int[] hash = new int[0];
+
+    @Override
+    protected int search(BodyStore store, double[] x, double[] y, double[] r) {
+        int n = store.size();
+        this.ensureCapacity(n);
+        this.clearPairs();
+        Arrays.fill(this.usedLevel, false);
+
+        // The finest cells are as large as the smallest body
+        double minRadius = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (isFinite(x[i], y[i]) && r[i] > 0) {
+                minRadius = Math.min(minRadius, r[i]);
+            }
+        }
+        this.base = minRadius < Double.POSITIVE_INFINITY ? 2 * minRadius : 1;
+
+        // Every body goes in the cell of its center, in its grid
+        for (int i = 0; i < n; i++) {
+            if (!isFinite(x[i], y[i])) {
+                this.level[i] = -1;
+                continue;
+            }
+            int l = 0;
+            while (l < MAX_LEVELS - 1 && this.side(l) < 2 * r[i]) {
+                l++;
+            }
+            this.level[i] = l;
+            this.usedLevel[l] = true;
+            this.cellX[i] = this.cellOf(x[i], l);
+            this.cellY[i] = this.cellOf(y[i], l);
+        }
+        this.sortBodies(n);
+
+        // Every body against the bodies of its grid with a higher index and
+        // of the coarser grids, in the 3x3 cells around it
+        for (int i = 0; i < n; i++) {
+            if (this.level[i] < 0) {
+                continue;
+            }
+            for (int l = this.level[i]; l < MAX_LEVELS; l++) {
+                if (!this.usedLevel[l]) {
+                    continue;
+                }
+                long cx = this.cellOf(x[i], l);
+                long cy = this.cellOf(y[i], l);
+                for (long nx = cx - 1; nx <= cx + 1; nx++) {
+                    for (long ny = cy - 1; ny <= cy + 1; ny++) {
+                        int h = this.hashOf(l, nx, ny);
+                        for (int k = this.start[h]; k < this.start[h + 1]; k++) {
+                            int j = this.sorted[k];
+                            if (this.level[j] == l && this.cellX[j] == nx && this.cellY[j] == ny
+                                    && (l > this.level[i] || j > i) && overlap(x, y, r, i, j)) {
+                                this.addPair(i, j);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return this.numPairs();
+    }
+
+    private double side(int level) {
+        return Math.scalb(this.base, level);
+    }
+
+    private long cellOf(double coord, int level) {
+        return (long) Math.floor(coord / this.side(level));
+    }
+
+    private int hashOf(int level, long cx, long cy) {
+        long key = (cx * 0x9E3779B97F4A7C15L + cy) * 0xC2B2AE3D27D4EB4FL + level;
+        return (int) (key ^ (key >>> 29)) & (this.start.length - 2);
+    }
+
+    /* Counting sort of the bodies by the hash of their cell */
+    private void sortBodies(int n) {
+        Arrays.fill(this.start, 0);
+        for (int i = 0; i < n; i++) {
+            if (this.level[i] >= 0) {
+                this.hash[i] = this.hashOf(this.level[i], this.cellX[i], this.cellY[i]);
+                this.start[this.hash[i] + 1]++;
+            }
+        }
+        for (int h = 0; h + 1 < this.start.length; h++) {
+            this.start[h + 1] += this.start[h];
+        }
+        for (int i = 0; i < n; i++) {
+            if (this.level[i] >= 0) {
+                // start[h] is used as a cursor, then shifted back
+                this.sorted[this.start[this.hash[i]]++] = i;
+            }
+        }
+        for (int h = this.start.length - 1; h > 0; h--) {
+            this.start[h] = this.start[h - 1];
+        }
+        this.start[0] = 0;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= this.level.length && this.start.length > 0) {
+            return;
+        }
+        int capacity = Math.max(MIN_CAPACITY, Math.max(n, this.level.length * 2));
+        this.level = new int[capacity];
+        this.cellX = new long[capacity];
+        this.cellY = new long[capacity];
+        this.sorted = new int[capacity];
+        this.hash = new int[capacity];
+        // a power of two of buckets, at least twice the bodies
+        this.start = new int[Integer.highestOneBit(2 * capacity - 1) * 2 + 1];
+    }
+}
@@ -0,0 +1,153 @@
+package atlas.model;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Broad phase of the collision detection which sorts the bodies by the left
+ * side of their bounding boxes, then sweeps along the x axis: a body can only
+ * touch the following ones, up to the first that starts beyond its right
+ * side. Large and small bodies mix well, as nothing depends on a cell size.
+ * <p>
+ * The order is kept from one search to the next: bodies move only a little
+ * per step, so the list is nearly sorted already and an insertion sort puts
+ * it back in order in almost linear time. When bodies have been added or
+ * removed the order of the remaining ones is kept as well.
+ */
+public class SweepAndPrune extends BroadPhase {
+
+    /* Bodies of the last search, by store index */
+    private Body[] refs = new Body[0];
+    private int count;
+    /* Store indices sorted by the left side of the boxes, and the sides */
+    private int[] order = new int[0];
+    private double[] left = new double[0];
+    /* Scratch arrays of the merge sort */
+    private int[] tmpOrder = new int[0];
+    private double[] tmpLeft = new double[0];
+
+    @Override
+    protected int search(BodyStore store, double[] x, double[] y, double[] r) {
+        int n = store.size();
+        this.clearPairs();
+
+        boolean nearlySorted = this.sameBodies(store) || this.remap(store);
+        for (int k = 0; k < this.count; k++) {
+            int i = this.order[k];
+            // bodies which are not finite go to the end
+            this.left[k] = isFinite(x[i], y[i]) ? x[i] - r[i] : Double.POSITIVE_INFINITY;
+        }
+        if (nearlySorted) {
+            this.insertionSort();
+        } else {
+            this.mergeSort();
+        }
+
+        for (int k = 0; k < this.count && this.left[k] < Double.POSITIVE_INFINITY; k++) {
+            int i = this.order[k];
+            double right = x[i] + r[i];
+            for (int l = k + 1; l < this.count && this.left[l] <= right; l++) {
+                int j = this.order[l];
+                if (Math.abs(y[i] - y[j]) <= r[i] + r[j]) {
+                    this.addPair(i, j);
+                }
+            }
+        }
+        return this.numPairs();
+    }
+
+    /* Checks if the store holds the same bodies of the last search */
+    private boolean sameBodies(BodyStore store) {
+        if (store.size() != this.count) {
+            return false;
+        }
+        for (int i = 0; i < this.count; i++) {
+            if (store.get(i) != this.refs[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Translates the order to the new store indices, keeping the order of the
+     * remaining bodies and appending the new ones. Returns false if most of
+     * the bodies are new, the order is then useless.
+     */
+    private boolean remap(BodyStore store) {
+        int n = store.size();
+        Map<Body, Integer> index = new IdentityHashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            index.put(store.get(i), i);
+        }
+        int[] newOrder = new int[Math.max(n, this.order.length)];
+        int kept = 0;
+        for (int k = 0; k < this.count; k++) {
+            Integer i = index.remove(this.refs[this.order[k]]);
+            if (i != null) {
+                newOrder[kept++] = i;
+            }
+        }
+        int m = kept;
+        for (int i : index.values()) {
+            newOrder[m++] = i;
+        }
+
+        this.order = newOrder;
+        this.count = n;
+        if (this.left.length < n) {
+            this.left = new double[newOrder.length];
+            this.tmpOrder = new int[newOrder.length];
+            this.tmpLeft = new double[newOrder.length];
+        }
+        if (this.refs.length < n) {
+            this.refs = new Body[newOrder.length];
+        }
+        for (int i = 0; i < n; i++) {
+            this.refs[i] = store.get(i);
+        }
+        return 2 * kept >= n;
+    }
+
+    private void insertionSort() {
+        for (int k = 1; k < this.count; k++) {
+            int i = this.order[k];
+            double key = this.left[k];
+            int l = k - 1;
+            while (l >= 0 && this.left[l] > key) {
+                this.order[l + 1] = this.order[l];
+                this.left[l + 1] = this.left[l];
+                l--;
+            }
+            this.order[l + 1] = i;
+            this.left[l + 1] = key;
+        }
+    }
+
+    /* Bottom up merge sort, for the first search */
+    private void mergeSort() {
+        for (int width = 1; width < this.count; width *= 2) {
+            for (int from = 0; from < this.count; from += 2 * width) {
+                int mid = Math.min(from + width, this.count);
+                int to = Math.min(from + 2 * width, this.count);
+                int a = from;
+                int b = mid;
+                for (int k = from; k < to; k++) {
+                    if (a < mid && (b >= to || this.left[a] <= this.left[b])) {
+                        this.tmpOrder[k] = this.order[a];
+                        this.tmpLeft[k] = this.left[a++];
+                    } else {
+                        this.tmpOrder[k] = this.order[b];
+                        this.tmpLeft[k] = this.left[b++];
+                    }
+                }
+            }
+            int[] o = this.order;
+            this.order = this.tmpOrder;
+            this.tmpOrder = o;
+            double[] l = this.left;
+            this.left = this.tmpLeft;
+            this.tmpLeft = l;
+        }
+    }
+}
@@ -1,19 +1,37 @@
 package atlas.model;
 
+import atlas.controller.HeadlessRunner;
+import atlas.controller.SimulationHost;
 import atlas.model.rules.AlgorithmBarnesHut;
 import atlas.model.rules.AlgorithmBruteForce;
+import atlas.model.rules.AlgorithmFastMultipole;
+import atlas.model.rules.AlgorithmKepler;
+import atlas.model.rules.CollisionStrategyAbsorb;
 import atlas.model.rules.CollisionStrategyFragments;
+import atlas.model.rules.Integrator;
+import atlas.model.rules.IntegratorBlockSteps;
+import atlas.model.rules.IntegratorEuler;
+import atlas.model.rules.IntegratorLeapfrog;
+import atlas.model.rules.IntegratorYoshida;
 import atlas.utils.Pair;
 import org.junit.Assert;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static atlas.model.Body.Properties.celsiusToKelvin;
 import static atlas.model.BodyType.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class Test {
@@ -48,6 +66,80 @@ public class Test {
         assertTrue(m.getBodiesToRender().size() > 2);
     }
 
+    /**
+     * Test absorb collision, among bodies that do not collide.
+     */
+    @org.junit.Test
+    public void testAbsorb() {
+        Model m = new ModelImpl();
+        m.setAlgorithm(new AlgorithmBruteForce());
+        m.setCollsion(new CollisionStrategyAbsorb());
+        for (int i = 0; i < 10; i++) {
+            m.getBodiesToRender().add(this.planet(i * AU, AU, EARTH_MASS));
+        }
+        Body one = m.getBodiesToRender().get(3);
+        Body two = this.planet(one.getPosX() + one.getProperties().getRadius(), one.getPosY(), EARTH_MASS / 10);
+        m.getBodiesToRender().add(two);
+        double mass = one.getMass() + two.getMass();
+
+        m.updateSim(1);
+
+        assertEquals(10, m.getBodiesToRender().size());
+        assertTrue(m.getBodiesToRender().get(3) == one);
+        assertFalse(m.getBodiesToRender().contains(two));
+        assertEquals(mass, one.getMass(), 1);
+
+        // a chain: the third planet only touches the second one, which is
+        // absorbed by the first one in the same step
+        m = new ModelImpl();
+        m.setAlgorithm(new AlgorithmBruteForce());
+        m.setCollsion(new CollisionStrategyAbsorb());
+        double radius = 6371 * 1000;
+        Body first = this.planet(0, 0, EARTH_MASS);
+        Body second = this.planet(radius, 0, EARTH_MASS / 10);
+        Body third = this.planet(2.5 * radius, 0, EARTH_MASS / 100);
+        m.getBodiesToRender().addAll(Arrays.asList(third, second, first));
+        mass = first.getMass() + second.getMass() + third.getMass();
+
+        m.updateSim(1);
+
+        assertEquals(Arrays.asList(first), m.getBodiesToRender());
+        assertEquals(mass, first.getMass(), mass * 1e-12);
+    }
+
+    /**
+     * Test the continuous collision detection: two planets which cross each
+     * other within a single step.
+     */
+    @org.junit.Test
+    public void testContinuousDetection() {
+        for (boolean continuous : new boolean[] { false, true }) {
+            Model m = new ModelImpl();
+            m.setAlgorithm(new AlgorithmBruteForce());
+            m.setCollsion(new CollisionStrategyAbsorb());
+            if (continuous) {
+                m.toggleContinuousDetection();
+            }
+            Body one = this.planet(-1e8, 0, EARTH_MASS);
+            Body two = this.planet(1e8, 1e6, EARTH_MASS / 10);
+            one.setVelocity(new Pair<>(1e5, 0.0));
+            two.setVelocity(new Pair<>(-1e5, 0.0));
+            m.getBodiesToRender().addAll(Arrays.asList(one, two));
+
+            m.updateSim(2000);
+
+            assertEquals(continuous ? Arrays.asList(one) : Arrays.asList(one, two), m.getBodiesToRender());
+            // the survivor keeps its path
+            assertEquals(1e8, one.getPosX(), 1e6);
+        }
+    }
+
+    /* A still planet with the radius of the Earth */
+    private Body planet(double x, double y, double mass) {
+        return new BodyImpl.Builder().name("test").type(PLANET).mass(mass).posX(x).posY(y)
+                .properties(new Body.Properties(6371 * 1000, EARTH_DAY)).build();
+    }
+
     /**
      * Test builer
      */
@@ -134,6 +226,500 @@ public class Test {
         }
     }
 
+    /**
+     * Test bodies that do not fit in the Barnes-Hut tree.
+     */
+    @org.junit.Test
+    public void testBarnesHutOutOfBounds() {
+        AlgorithmBarnesHut direct = new AlgorithmBarnesHut(1);
+        direct.setMaxLength(AU);
+        AlgorithmBarnesHut remove = new AlgorithmBarnesHut(1);
+        remove.setMaxLength(AU);
+        remove.setOutOfBounds(AlgorithmBarnesHut.OutOfBounds.REMOVE);
+        for (AlgorithmBarnesHut alg : Arrays.asList(direct, remove)) {
+            Model m = new ModelImpl();
+            m.setAlgorithm(alg);
+            Body sun = new BodyImpl(EpochJ2000.SUN.getBody());
+            sun.setPosX(0);
+            sun.setPosY(0);
+            // the J2000 bodies are shared, other tests may have changed them
+            sun.setVelocity(new Pair<>(0.0, 0.0));
+            Body far = new BodyImpl(EpochJ2000.EARTH.getBody());
+            far.setPosX(10 * AU);
+            far.setPosY(0);
+            far.setVelocity(new Pair<>(0.0, 0.0));
+            m.getBodiesToRender().add(sun);
+            m.getBodiesToRender().add(far);
+            m.updateSim(1000);
+            if (alg == direct) {
+                assertEquals(2, m.getBodiesToRender().size());
+                assertTrue(far.getVelX() < 0);
+            } else {
+                assertEquals(1, m.getBodiesToRender().size());
+            }
+        }
+    }
+
+    /**
+     * Benchmark of the Barnes-Hut accuracy presets: time of the force phase and
+     * force error against the direct sum of the brute force.
+     */
+    @org.junit.Test
+    public void testBarnesHutAccuracy() {
+        List<Body> bodies = this.spawnRings(40, 50);
+        BodyStore exact = this.exactForces(bodies);
+        double previousError = Double.MAX_VALUE;
+        for (AlgorithmBarnesHut.Accuracy accuracy : AlgorithmBarnesHut.Accuracy.values()) {
+            AlgorithmBarnesHut alg = new AlgorithmBarnesHut(accuracy);
+            BodyStore store = new BodyStore(bodies);
+            alg.computeForces(store);
+            int iters = 20;
+            long tik = System.nanoTime();
+            for (int k = 0; k < iters; k++) {
+                store.resetForces();
+                alg.computeForces(store);
+            }
+            double took = (System.nanoTime() - tik) / 1e6 / iters;
+            double error = this.forceError(store, exact);
+            System.out.println("Barnes-Hut " + accuracy + " (theta " + accuracy.getTheta() + ") force phase took "
+                    + took + "ms, mean force error = " + error);
+            assertTrue(error <= previousError);
+            previousError = error;
+        }
+        assertTrue(previousError < 0.01);
+    }
+
+    /**
+     * Test the forces of the fast multipole method against the direct sum.
+     */
+    @org.junit.Test
+    public void testFastMultipole() {
+        List<Body> bodies = this.spawnRings(40, 50);
+        BodyStore exact = this.exactForces(bodies);
+        AlgorithmFastMultipole alg = new AlgorithmFastMultipole();
+        BodyStore store = new BodyStore(bodies);
+        alg.computeForces(store);
+        int iters = 20;
+        long tik = System.nanoTime();
+        for (int k = 0; k < iters; k++) {
+            store.resetForces();
+            alg.computeForces(store);
+        }
+        double took = (System.nanoTime() - tik) / 1e6 / iters;
+        double error = this.forceError(store, exact);
+        System.out.println("Fast multipole force phase took " + took + "ms, mean force error = " + error);
+        assertTrue(error < 0.01);
+    }
+
+    /**
+     * Test the energy drift of the integrators on an eccentric orbit, with 5
+     * days steps.
+     */
+    @org.junit.Test
+    public void testIntegrators() {
+        double previousDrift = Double.MAX_VALUE;
+        for (Integrator integrator : Arrays.asList(new IntegratorEuler(), new IntegratorLeapfrog(),
+                new IntegratorYoshida())) {
+            Model m = new ModelImpl();
+            m.setAlgorithm(new AlgorithmBruteForce());
+            m.setIntegrator(integrator);
+            Body sun = new BodyImpl(EpochJ2000.SUN.getBody());
+            sun.setPosX(0);
+            sun.setPosY(0);
+            sun.setVelocity(new Pair<>(0.0, 0.0));
+            Body earth = new BodyImpl(EpochJ2000.EARTH.getBody());
+            earth.setPosX(AU);
+            earth.setPosY(0);
+            // 20% slower than the circular velocity
+            earth.setVelocity(new Pair<>(0.0, 0.8 * Math.sqrt(G * SOLAR_MASS / AU)));
+            m.getBodiesToRender().add(sun);
+            m.getBodiesToRender().add(earth);
+            double initial = this.energy(m.getBodiesToRender());
+            double drift = 0;
+            for (int i = 0; i < 365 * 10 / 5; i++) {
+                m.updateSim(5 * EARTH_DAY);
+                drift = Math.max(drift, Math.abs(this.energy(m.getBodiesToRender()) / initial - 1));
+            }
+            System.out.println(integrator.getClass().getSimpleName() + " max energy drift = " + drift);
+            assertTrue(drift < previousDrift);
+            previousDrift = drift;
+        }
+        assertTrue(previousDrift < 1e-3);
+    }
+
+    /**
+     * Test the block time steps on the Moon, against a leapfrog with 1 hour
+     * steps.
+     */
+    @org.junit.Test
+    public void testBlockSteps() {
+        Model reference = this.solarSystem(new IntegratorLeapfrog());
+        Model leapfrog = this.solarSystem(new IntegratorLeapfrog());
+        Model block = this.solarSystem(new IntegratorBlockSteps());
+        for (int day = 0; day < 60; day++) {
+            for (int h = 0; h < 24; h++) {
+                reference.updateSim(3600);
+            }
+            leapfrog.updateSim(24 * 3600);
+            block.updateSim(24 * 3600);
+        }
+        double leapfrogError = this.moonError(leapfrog, reference);
+        double blockError = this.moonError(block, reference);
+        System.out.println("Moon position error after 60 days: leapfrog = " + leapfrogError + "m, block steps = "
+                + blockError + "m");
+        assertTrue(blockError < leapfrogError / 10);
+    }
+
+    /**
+     * Test the patched conics: the planets and the Moon follow the same orbits
+     * with steps of 10 days as with steps of an hour. The conics leave out the
+     * pull of the Moon on the Earth, so they drift from the brute force.
+     */
+    @org.junit.Test
+    public void testKepler() {
+        Model reference = this.solarSystem(new IntegratorLeapfrog());
+        Model hours = this.keplerSystem();
+        Model days = this.keplerSystem();
+        for (int day = 0; day < 60; day++) {
+            for (int h = 0; h < 24; h++) {
+                reference.updateSim(3600);
+                hours.updateSim(3600);
+            }
+            if (day % 10 == 9) {
+                days.updateSim(10 * 24 * 3600);
+            }
+        }
+        double stepError = this.moonError(days, hours);
+        double error = this.moonError(days, reference);
+        System.out.println("Moon position error after 60 days in 10 day steps: " + stepError
+                + "m from hour steps, " + error + "m from the brute force");
+        assertTrue(stepError < 1e5);
+        assertTrue(error < 1e8);
+    }
+
+    /**
+     * Test the block time steps with the patched conics: the bodies on a conic
+     * are left out of the force phase by the algorithm, the integrator must
+     * not put them back.
+     */
+    @org.junit.Test
+    public void testKeplerBlockSteps() {
+        boolean[] computed = new boolean[1];
+        Model m = this.keplerSystem();
+        m.setAlgorithm(new AlgorithmKepler() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void computeForces(BodyStore bodies) {
+                // only the Sun is integrated
+                for (int i = 1; i < bodies.size(); i++) {
+                    computed[0] |= bodies.active()[i];
+                }
+                super.computeForces(bodies);
+            }
+        });
+        m.setIntegrator(new IntegratorBlockSteps());
+        for (int day = 0; day < 10; day++) {
+            m.updateSim(24 * 3600);
+        }
+        assertFalse(computed[0]);
+    }
+
+    /**
+     * Test the headless runner: a saved simulation is loaded and advanced as the
+     * original one, the last step is cut to end at the requested time.
+     */
+    @org.junit.Test
+    public void testHeadless() throws IOException {
+        Model original = this.solarSystem(new IntegratorLeapfrog());
+        File save = File.createTempFile("atlas", ".sim");
+        save.deleteOnExit();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(save))) {
+            out.writeObject(original);
+        }
+        HeadlessRunner runner = new HeadlessRunner(HeadlessRunner.loadSave(save.getPath()));
+        runner.setStep(3600);
+        HeadlessRunner.Statistics stats = runner.run(10 * 24 * 3600 + 100);
+        for (int i = 0; i < 10 * 24; i++) {
+            original.updateSim(3600);
+        }
+        original.updateSim(100);
+        assertEquals(241, stats.getSteps());
+        assertEquals(10 * 24 * 3600 + 100, stats.getSimulated(), 0);
+        assertEquals(original.getClock().currentSimTime(), runner.getModel().getClock().currentSimTime());
+        List<Body> loaded = runner.getModel().getBodiesToRender();
+        assertEquals(original.getBodiesToRender().size(), loaded.size());
+        for (int i = 0; i < loaded.size(); i++) {
+            assertEquals(original.getBodiesToRender().get(i).getPosX(), loaded.get(i).getPosX(), 1);
+            assertEquals(original.getBodiesToRender().get(i).getPosY(), loaded.get(i).getPosY(), 1);
+        }
+    }
+
+    /**
+     * Test the simulations run together by a host: each one ends where it
+     * would alone, even if it is paused in between.
+     */
+    @org.junit.Test
+    public void testSimulationHost() throws Exception {
+        Model original = this.solarSystem(new IntegratorLeapfrog());
+        double duration = 120 * 24 * 3600;
+        // a single worker, the simulations take turns on it
+        SimulationHost host = new SimulationHost(1);
+        List<SimulationHost.Simulation> sims = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sims.add(host.submit(SimulationHost.copyOf(original), duration, 60));
+        }
+        sims.get(0).pause();
+        while (sims.get(0).getState() != SimulationHost.State.PAUSED) {
+            assertFalse(sims.get(0).isOver());
+            Thread.sleep(1);
+        }
+        assertTrue(sims.get(0).getSimulated() < duration);
+        // every other one goes on before any of them ends
+        while (sims.subList(1, sims.size()).stream().anyMatch(s -> s.getSteps() == 0)) {
+            assertTrue(sims.stream().noneMatch(SimulationHost.Simulation::isOver));
+            Thread.sleep(1);
+        }
+        sims.get(0).resume();
+        assertEquals(4, host.awaitAll().size());
+        host.shutdown();
+        HeadlessRunner alone = new HeadlessRunner(original);
+        alone.setStep(60);
+        alone.run(duration);
+        for (SimulationHost.Simulation s : sims) {
+            assertEquals(SimulationHost.State.DONE, s.getState());
+            assertEquals(120 * 24 * 60, s.getSteps());
+            List<Body> bodies = s.getModel().getBodiesToRender();
+            assertEquals(original.getBodiesToRender().size(), bodies.size());
+            for (int i = 0; i < bodies.size(); i++) {
+                assertEquals(original.getBodiesToRender().get(i).getPosX(), bodies.get(i).getPosX(), 1);
+                assertEquals(original.getBodiesToRender().get(i).getPosY(), bodies.get(i).getPosY(), 1);
+            }
+        }
+    }
+
+    /**
+     * Test the interpolation between two frames: positions and rotations move
+     * linearly (the rotations the shortest way round), bodies appearing in the
+     * second frame stay where they are, whatever their order.
+     */
+    @org.junit.Test
+    public void testFrameInterpolation() {
+        Body a = this.copy(EpochJ2000.EARTH, 0, 0, 0);
+        Body b = this.copy(EpochJ2000.MOON, 100, 0, 0);
+        a.getProperties().setRotationAngle(350);
+        FrameSnapshot previous = new FrameSnapshot(Arrays.asList(a, b), "");
+        Body c = this.copy(EpochJ2000.MARS, 7, 7, 0);
+        a.setPosX(10);
+        a.setPosY(-20);
+        a.getProperties().setRotationAngle(10);
+        b.setPosX(200);
+        FrameSnapshot current = new FrameSnapshot(Arrays.asList(c, b, a), "");
+        FrameSnapshot half = current.interpolate(previous, 0.5);
+        assertEquals(3, half.size());
+        assertEquals(7, half.getPosX(0), 0);
+        assertEquals(150, half.getPosX(1), 0);
+        assertEquals(5, half.getPosX(2), 0);
+        assertEquals(-10, half.getPosY(2), 0);
+        assertEquals(360, half.getRotationAngle(2), 1e-9);
+        assertEquals(200, current.getPosX(1), 0);
+    }
+
+    /* The solar system with the patched conics, every body orbits its parent */
+    private Model keplerSystem() {
+        Model m = this.solarSystem(new IntegratorLeapfrog());
+        m.setAlgorithm(new AlgorithmKepler());
+        List<Body> bodies = m.getBodiesToRender();
+        for (int i = 1; i < bodies.size(); i++) {
+            bodies.get(i).getProperties().setParent(bodies.get(i == 2 ? 1 : 0));
+        }
+        return m;
+    }
+
+    /*
+     * Sun, Earth, Moon and Neptune in circular orbits. The J2000 bodies are
+     * shared (and changed by other tests), the model gets copies of them.
+     */
+    private Model solarSystem(Integrator integrator) {
+        double earthVel = Math.sqrt(G * SOLAR_MASS / AU);
+        double moonDist = 384400 * 1000;
+        Model m = new ModelImpl();
+        m.getBodiesToRender().add(this.copy(EpochJ2000.SUN, 0, 0, 0));
+        m.getBodiesToRender().add(this.copy(EpochJ2000.EARTH, AU, 0, earthVel));
+        m.getBodiesToRender().add(this.copy(EpochJ2000.MOON, AU + moonDist, 0,
+                earthVel + Math.sqrt(G * EARTH_MASS / moonDist)));
+        m.getBodiesToRender().add(this.copy(EpochJ2000.NEPTUNE, 30 * AU, 0, Math.sqrt(G * SOLAR_MASS / (30 * AU))));
+        m.setAlgorithm(new AlgorithmBruteForce());
+        m.setIntegrator(integrator);
+        return m;
+    }
+
+    private Body copy(EpochJ2000 b, double x, double y, double vy) {
+        Body c = new BodyImpl(b.getBody());
+        c.setPosX(x);
+        c.setPosY(y);
+        c.setVelocity(new Pair<>(0.0, vy));
+        return c;
+    }
+
+    /* Distance between the positions of the Moon in two models */
+    private double moonError(Model m, Model reference) {
+        Body a = m.getBodiesToRender().get(2);
+        Body b = reference.getBodiesToRender().get(2);
+        return Math.hypot(a.getPosX() - b.getPosX(), a.getPosY() - b.getPosY());
+    }
+
+    /* Total energy of the bodies, kinetic and potential */
+    private double energy(List<Body> bodies) {
+        double e = 0;
+        for (int i = 0; i < bodies.size(); i++) {
+            Body a = bodies.get(i);
+            e += 0.5 * a.getMass() * (a.getVelX() * a.getVelX() + a.getVelY() * a.getVelY());
+            for (int j = i + 1; j < bodies.size(); j++) {
+                e -= G * a.getMass() * bodies.get(j).getMass() / a.distanceTo(bodies.get(j));
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Test the direct summation kernel against the forces of the store, on
+     * half of the bodies.
+     */
+    @org.junit.Test
+    public void testDirectSum() {
+        List<Body> bodies = this.spawnRings(10, 50);
+        BodyStore exact = this.exactForces(bodies);
+        BodyStore store = new BodyStore(bodies);
+        boolean[] targets = new boolean[store.size()];
+        for (int i = 0; i < targets.length; i += 2) {
+            targets[i] = true;
+        }
+        new DirectSum().addForces(store, targets);
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals(targets[i] ? exact.forceX()[i] : 0, store.forceX()[i], Math.abs(exact.forceX()[i]) * 1e-9);
+            assertEquals(targets[i] ? exact.forceY()[i] : 0, store.forceY()[i], Math.abs(exact.forceY()[i]) * 1e-9);
+        }
+        // the brute force computes every pair once, the forces are exactly opposite
+        BodyStore pair = new BodyStore(bodies.subList(0, 2));
+        new AlgorithmBruteForce().computeForces(pair);
+        assertEquals(-pair.forceX()[0], pair.forceX()[1], 0);
+        assertEquals(-pair.forceY()[0], pair.forceY()[1], 0);
+    }
+
+    /**
+     * Test the generation of the store: it changes only when bodies are added
+     * or removed or a mass changes, not when they move.
+     */
+    @org.junit.Test
+    public void testStoreGeneration() {
+        List<Body> bodies = this.spawnRings(2, 10);
+        BodyStore store = new BodyStore(bodies);
+        int generation = store.generation();
+        bodies.get(0).setPosX(bodies.get(0).getPosX() + 1000);
+        store.load(bodies);
+        assertEquals(generation, store.generation());
+        bodies.get(1).setMass(bodies.get(1).getMass() * 2);
+        store.load(bodies);
+        assertTrue(store.generation() != generation);
+        generation = store.generation();
+        bodies.remove(2);
+        store.load(bodies);
+        assertTrue(store.generation() != generation);
+        generation = store.generation();
+        boolean[] keep = new boolean[store.size()];
+        Arrays.fill(keep, true);
+        store.compact(keep, Arrays.asList(this.copy(EpochJ2000.MOON, 0, 0, 0)));
+        assertTrue(store.generation() != generation);
+        assertEquals(bodies.size(), store.size());
+    }
+
+    /**
+     * Test the pairs of the spatial hash against all the pairs, with bodies of
+     * very different sizes.
+     */
+    @org.junit.Test
+    public void testBroadPhase() {
+        Random rand = new Random(42);
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double radius = i % 100 == 0 ? 5e4 : 10 + rand.nextDouble() * 1000;
+            bodies.add(new BodyImpl.Builder().name("test").type(PLANET).mass(1).posX(rand.nextDouble() * 1e6)
+                    .posY(rand.nextDouble() * 1e6).properties(new Body.Properties(radius, EARTH_DAY)).build());
+        }
+        BodyStore store = new BodyStore(bodies);
+        for (BroadPhase broadPhase : Arrays.asList(new SpatialHash(), new SweepAndPrune())) {
+            store.load(bodies.subList(0, 1500));
+            this.checkPairs(broadPhase, store);
+            // moved bodies, then removed and added ones: the order is reused
+            for (int i = 0; i < store.size(); i++) {
+                store.drift(i, 1);
+                store.posX()[i] += rand.nextGaussian() * 2000;
+            }
+            this.checkPairs(broadPhase, store);
+            store.load(bodies.subList(300, 2000));
+            this.checkPairs(broadPhase, store);
+        }
+    }
+
+    /* Compares the pairs found by the broad phase with all the overlapping boxes */
+    private void checkPairs(BroadPhase broadPhase, BodyStore store) {
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = i + 1; j < store.size(); j++) {
+                double rr = store.radius()[i] + store.radius()[j];
+                if (Math.abs(store.posX()[i] - store.posX()[j]) <= rr
+                        && Math.abs(store.posY()[i] - store.posY()[j]) <= rr) {
+                    expected.add((long) i * store.size() + j);
+                }
+            }
+        }
+        int n = broadPhase.findPairs(store);
+        Set<Long> found = new HashSet<>();
+        for (int k = 0; k < n; k++) {
+            int i = Math.min(broadPhase.pairs()[2 * k], broadPhase.pairs()[2 * k + 1]);
+            int j = Math.max(broadPhase.pairs()[2 * k], broadPhase.pairs()[2 * k + 1]);
+            found.add((long) i * store.size() + j);
+        }
+        assertEquals(expected.size(), n);
+        assertEquals(expected, found);
+    }
+
+    /* Spawns copies of the J2000 bodies on concentric rings, 1 AU apart */
+    private List<Body> spawnRings(int rings, int perRing) {
+        List<Body> templates = Arrays.stream(EpochJ2000.values()).map(ep -> ep.getBody())
+                .collect(Collectors.toList());
+        List<Body> bodies = new ArrayList<>();
+        for (int r = 1; r <= rings; r++) {
+            bodies.addAll(new Spawner().spawn(perRing, templates, 0, 0, AU * r));
+        }
+        return bodies;
+    }
+
+    /* Forces computed with the direct sum, as in the brute force */
+    private BodyStore exactForces(List<Body> bodies) {
+        BodyStore exact = new BodyStore(bodies);
+        for (int i = 0; i < exact.size(); i++) {
+            for (int j = 0; j < exact.size(); j++) {
+                if (i != j) {
+                    exact.addForce(i, j);
+                }
+            }
+        }
+        return exact;
+    }
+
+    /* Mean relative error of the forces */
+    private double forceError(BodyStore store, BodyStore exact) {
+        double error = 0;
+        for (int i = 0; i < store.size(); i++) {
+            double dx = store.forceX()[i] - exact.forceX()[i];
+            double dy = store.forceY()[i] - exact.forceY()[i];
+            error += Math.hypot(dx, dy) / Math.hypot(exact.forceX()[i], exact.forceY()[i]);
+        }
+        return error / store.size();
+    }
+
     private void setSim(Model m, int numBodies) {
         new Spawner().spawn(numBodies,
                 Arrays.stream(EpochJ2000.values()).map(ep -> ep.getBody()).collect(Collectors.toList()),
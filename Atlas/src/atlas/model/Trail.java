@@ -10,6 +10,7 @@ import java.util.Deque;
  * This class represents the trail that a body leaves behind when moving. It
  * functions as a fixed size queue, so that when it reaches maximum capacity it
  * removes the oldest element to make room for the new one.
+ * It is safe to read while the simulation adds points from another thread.
  */
 public class Trail {
 
@@ -42,7 +43,7 @@ public class Trail {
      * @param x the x coordinate
      * @param y the y coordinate
      */
-    public void addPoint(double x, double y) {
+    public synchronized void addPoint(double x, double y) {
         if (this.shouldAdd()) {
             this.points.addFirst(new Pair<Double, Double>(x, y));
             if (this.points.size() - 1 == length) {
@@ -64,7 +65,7 @@ public class Trail {
      *
      * @return a collection of the trail points
      */
-    public Collection<Pair<Double, Double>> getPoints() {
+    public synchronized Collection<Pair<Double, Double>> getPoints() {
         return new ArrayDeque<>(this.points); // defensive copy
     }
 
@@ -78,7 +79,7 @@ public class Trail {
     /**
      * Resets the trail by deleting all points.
      */
-    public void reset() {
+    public synchronized void reset() {
         this.points = new ArrayDeque<>();
     }
 }
@@ -1,8 +1,10 @@
 package atlas.model.rules;
 
 import atlas.model.Body;
-
-import java.util.List;
+import atlas.model.BodyStore;
+import atlas.model.BroadPhase;
+import atlas.model.SpatialHash;
+import atlas.model.SweepAndPrune;
 
 /**
  * This class represents a N-Body algorithm, which is used to update the
@@ -12,17 +14,241 @@ public abstract class Algorithm implements java.io.Serializable {
 
     private static final long serialVersionUID = -766146245161256993L;
 
+    /**
+     * How the candidate pairs of the collision detection are found.
+     */
+    public enum Detection {
+        /**
+         * Uniform grids in a hash table, see {@link SpatialHash}.
+         */
+        GRID,
+        /**
+         * Sort and sweep along the x axis, see {@link SweepAndPrune}.
+         */
+        SWEEP_AND_PRUNE
+    }
+
     protected CollisionStrategy collisionStrategy = new CollisionStrategyFragments();
+    /*
+     * The leapfrog, second order for a force evaluation per step. null means
+     * the Euler, as in simulations saved before the integrators existed: the
+     * initializer is not run when they are loaded.
+     */
+    protected Integrator integrator = new IntegratorLeapfrog();
+    private Detection detection;
+    private boolean continuousDetection;
+    private transient BroadPhase broadPhase;
+    /* Touching pairs found by the last detection, as the pairs of the broad phase */
+    private transient int[] contacts;
+    private transient boolean[] touching;
 
     /**
      * It updates the simulation according to a specific n-body algorithm
-     * implementation.
+     * implementation. The algorithm works on the columnar store, that is
+     * written back to the bodies by the caller. The collisions are managed
+     * first, as a phase of their own, then the bodies are moved by the
+     * integrator, which asks the algorithm for the forces as many times as it
+     * needs.
      *
-     * @param bodies input bodies to be updated
+     * @param bodies input bodies to be updated, already loaded in the store
      * @param sec    time step of the update
-     * @return the updated bodies
      */
-    public abstract List<Body> exceuteUpdate(List<Body> bodies, double sec);
+    public void exceuteUpdate(BodyStore bodies, double sec) {
+        if (this.collisionStrategy != null) {
+            this.manageCollisions(bodies, this.continuousDetection ? sec : 0);
+        }
+        this.move(bodies, sec);
+    }
+
+    /**
+     * Moves the bodies for a time step, once the collisions have been
+     * managed. By default the integrator does it.
+     *
+     * @param bodies the bodies, already loaded in the store
+     * @param sec    time step of the update
+     */
+    protected void move(BodyStore bodies, double sec) {
+        this.getIntegrator().step(bodies, this, sec);
+    }
+
+    /**
+     * Manages the collisions in two phases. The touching pairs are detected
+     * first, without changing anything: the candidate pairs are found by the
+     * broad phase of the current {@link Detection}, then checked exactly, in
+     * parallel. Then the collisions are resolved in one batch by the
+     * collision strategy, and the simulation's list and the store are
+     * compacted once at the end.
+     * <p>
+     * With a duration the detection is continuous: the bodies are moved along
+     * a straight line, with their velocity, for the whole step, and the pairs
+     * which touch at any time of it collide. Fast bodies can not jump past
+     * each other between two steps.
+     *
+     * @param bodies the bodies, already loaded in the store
+     * @param dt     the duration of the step, 0 to check the current
+     *               positions only
+     */
+    protected void manageCollisions(BodyStore bodies, double dt) {
+        int numContacts = this.detectCollisions(bodies, dt);
+        if (numContacts > 0) {
+            this.resolveCollisions(bodies, numContacts, dt);
+        }
+    }
+
+    /* Keeps the candidate pairs which touch, with at least one attracting body */
+    private int detectCollisions(BodyStore bodies, double dt) {
+        if (this.broadPhase == null) {
+            this.broadPhase = this.getDetection() == Detection.SWEEP_AND_PRUNE ? new SweepAndPrune()
+                    : new SpatialHash();
+        }
+        int numPairs = dt > 0 ? this.broadPhase.findPairs(bodies, dt) : this.broadPhase.findPairs(bodies);
+        int[] pairs = this.broadPhase.pairs();
+        if (this.touching == null || this.touching.length < numPairs) {
+            this.touching = new boolean[Math.max(numPairs, 2 * (this.touching == null ? 0 : this.touching.length))];
+            this.contacts = new int[2 * this.touching.length];
+        }
+        double[] x = bodies.posX();
+        double[] y = bodies.posY();
+        double[] vx = bodies.velX();
+        double[] vy = bodies.velY();
+        double[] r = bodies.radius();
+        boolean[] attracting = bodies.attracting();
+        boolean[] touch = this.touching;
+        // every pair writes only its own flag
+        ParallelRange.forEach(ParallelRange.current(), 0, numPairs, k -> {
+            int i = pairs[2 * k];
+            int j = pairs[2 * k + 1];
+            touch[k] = (attracting[i] || attracting[j]) && impactTime(x[j] - x[i], y[j] - y[i], vx[j] - vx[i],
+                    vy[j] - vy[i], r[i] + r[j], dt) >= 0;
+        });
+        int numContacts = 0;
+        for (int k = 0; k < numPairs; k++) {
+            if (touch[k]) {
+                this.contacts[2 * numContacts] = pairs[2 * k];
+                this.contacts[2 * numContacts + 1] = pairs[2 * k + 1];
+                numContacts++;
+            }
+        }
+        return numContacts;
+    }
+
+    /*
+     * Gives the contacts to the collision strategy. A body removed by a
+     * collision is replaced, in its next contacts, by the body which removed
+     * it, so chains of collisions merge in a single step. Contacts which end
+     * up between a body and itself are dropped. With a continuous detection
+     * the two bodies are given to the strategy where they are closest within
+     * the step, then they are put back.
+     */
+    private void resolveCollisions(BodyStore bodies, int numContacts, double dt) {
+        CollisionList sim = new CollisionList(bodies);
+        int[] survivor = new int[bodies.size()];
+        for (int i = 0; i < survivor.length; i++) {
+            survivor[i] = i;
+        }
+        for (int k = 0; k < numContacts; k++) {
+            int i = find(survivor, this.contacts[2 * k]);
+            int j = find(survivor, this.contacts[2 * k + 1]);
+            Body a = bodies.get(i);
+            Body b = bodies.get(j);
+            if (i != j && (a.isAttracting() || b.isAttracting())) {
+                double t = dt > 0 ? closestTime(bodies, i, j, dt) : 0;
+                if (t > 0) {
+                    moveTo(bodies, i, t);
+                    moveTo(bodies, j, t);
+                }
+                this.collisionStrategy.manageCollision(sim, a, b);
+                if (t > 0) {
+                    moveTo(bodies, i, 0);
+                    moveTo(bodies, j, 0);
+                }
+                if (!sim.isAlive(i)) {
+                    survivor[i] = j;
+                } else if (!sim.isAlive(j)) {
+                    survivor[j] = i;
+                }
+            }
+        }
+        if (sim.isChanged()) {
+            sim.apply();
+        }
+    }
+
+    /**
+     * Time of impact of two moving circles, whose relative motion is a
+     * straight line.
+     *
+     * @param dx  relative position, x
+     * @param dy  relative position, y
+     * @param dvx relative velocity, x
+     * @param dvy relative velocity, y
+     * @param rr  sum of the radii
+     * @param dt  the time the circles move for
+     * @return the time they first touch within [0, dt], 0 if they touch
+     *         already, a negative number if they do not
+     */
+    static double impactTime(double dx, double dy, double dvx, double dvy, double rr, double dt) {
+        double c = dx * dx + dy * dy - rr * rr;
+        if (c <= 0) {
+            return 0;
+        }
+        // |d + dv t|^2 = rr^2, the first root if they get closer
+        double a = dvx * dvx + dvy * dvy;
+        double b = dx * dvx + dy * dvy;
+        double disc = b * b - a * c;
+        if (dt <= 0 || b >= 0 || disc < 0) {
+            return -1;
+        }
+        double t = c / (-b + Math.sqrt(disc));
+        return t <= dt ? t : -1;
+    }
+
+    /*
+     * The time, within the step, at which the bodies i and j are closest,
+     * with their current radii. If they do not touch any more (i.e. one of
+     * them has been replaced by a survivor) the collision is left to the
+     * strategy, at the current positions.
+     */
+    private static double closestTime(BodyStore bodies, int i, int j, double dt) {
+        double[] x = bodies.posX();
+        double[] y = bodies.posY();
+        double[] vx = bodies.velX();
+        double[] vy = bodies.velY();
+        double dx = x[j] - x[i];
+        double dy = y[j] - y[i];
+        double dvx = vx[j] - vx[i];
+        double dvy = vy[j] - vy[i];
+        double rr = bodies.get(i).getProperties().getRadius() + bodies.get(j).getProperties().getRadius();
+        if (impactTime(dx, dy, dvx, dvy, rr, dt) <= 0) {
+            return 0;
+        }
+        double t = -(dx * dvx + dy * dvy) / (dvx * dvx + dvy * dvy);
+        return Math.min(t, dt);
+    }
+
+    /* Moves the body i along its velocity, from its position in the store */
+    private static void moveTo(BodyStore bodies, int i, double t) {
+        Body b = bodies.get(i);
+        b.setPosX(bodies.posX()[i] + bodies.velX()[i] * t);
+        b.setPosY(bodies.posY()[i] + bodies.velY()[i] * t);
+    }
+
+    /* The body which has taken the place of the body i, with path halving */
+    private static int find(int[] survivor, int i) {
+        while (survivor[i] != i) {
+            survivor[i] = survivor[survivor[i]];
+            i = survivor[i];
+        }
+        return i;
+    }
+
+    /**
+     * Accumulates in the store the force applied to the bodies at their
+     * current positions, without moving them.
+     *
+     * @param bodies the bodies, with their forces reset
+     */
+    public abstract void computeForces(BodyStore bodies);
 
     /**
      * @return the current algorithm's collision system
@@ -40,4 +266,58 @@ public abstract class Algorithm implements java.io.Serializable {
         this.collisionStrategy = strategy;
     }
 
+    /**
+     * @return the current algorithm's integrator, the leapfrog by default
+     */
+    public Integrator getIntegrator() {
+        if (this.integrator == null) {
+            this.integrator = new IntegratorEuler();
+        }
+        return this.integrator;
+    }
+
+    /**
+     * Sets a new integrator, changes how the bodies are moved along a step.
+     *
+     * @param integrator the new integrator
+     */
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+    }
+
+    /**
+     * @return how the candidate pairs of the collision detection are found
+     */
+    public Detection getDetection() {
+        return this.detection != null ? this.detection : Detection.GRID;
+    }
+
+    /**
+     * Changes how the candidate pairs of the collision detection are found.
+     *
+     * @param detection the new broad phase
+     */
+    public void setDetection(Detection detection) {
+        this.detection = detection;
+        this.broadPhase = null;
+    }
+
+    /**
+     * @return true if the collisions are checked along the whole step
+     */
+    public boolean isContinuousDetection() {
+        return this.continuousDetection;
+    }
+
+    /**
+     * Enables or disables the continuous collision detection: the bodies are
+     * checked along their path during the whole step, instead of at its start
+     * only, so large steps do not miss the collisions of fast bodies.
+     *
+     * @param continuous true to check the whole step
+     */
+    public void setContinuousDetection(boolean continuous) {
+        this.continuousDetection = continuous;
+    }
+
 }
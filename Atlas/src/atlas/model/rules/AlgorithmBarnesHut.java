@@ -1,34 +1,369 @@
 package atlas.model.rules;
 
 import atlas.model.BHTree;
-import atlas.model.Body;
-import atlas.model.Quad;
+import atlas.model.BodyStore;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+/**
+ * This algorithm groups far bodies in a quadtree and approximates them with
+ * their center of mass. Complexity is NlogN. The root of the tree is fitted
+ * to the bodies at every step, so its depth follows the actual spread of the
+ * system. The force phase walks the tree for every body independently, so it
+ * can be split across many threads; the positions are updated in a separate
+ * pass, once all forces are known.
+ */
 public class AlgorithmBarnesHut extends Algorithm {
     private static final long serialVersionUID = -266156345861451285L;
 
+    /**
+     * Default limit of the side of the tree's root, in meters.
+     */
+    public static final double MAX_LENGTH = 2 * 1e18;
+    /* Keeps the outermost bodies inside the root despite rounding */
+    private static final double MARGIN = 1e-6;
+
+    /**
+     * Named opening angles, trading accuracy for speed.
+     */
+    public enum Accuracy {
+        /**
+         * Coarse approximation, for simulations with a lot of bodies.
+         */
+        FAST(1.0),
+        /**
+         * The usual compromise.
+         */
+        BALANCED(0.5),
+        /**
+         * Close to the brute force, for planetary systems.
+         */
+        PRECISE(0.25);
+
+        private final double theta;
+
+        private Accuracy(double theta) {
+            this.theta = theta;
+        }
+
+        /**
+         * @return the opening angle of the preset
+         */
+        public double getTheta() {
+            return this.theta;
+        }
+    }
+
+    /**
+     * What happens to the bodies that are too far away to fit in the tree.
+     */
+    public enum OutOfBounds {
+        /**
+         * They still feel the tree, and every body feels them through a
+         * direct sum.
+         */
+        DIRECT_SUM,
+        /**
+         * They are removed from the simulation.
+         */
+        REMOVE
+    }
+
+    /* 0 means all the available processors */
+    private int parallelism;
+    private double theta;
+    /* 0 and null mean the defaults, as in simulations saved before they existed */
+    private double maxLength;
+    private OutOfBounds outOfBounds;
+    private transient ForkJoinPool pool;
+    private transient BHTree tree;
+    private transient int[] escaped;
+
+    /**
+     * Construct the algorithm using all the available processors and the
+     * balanced accuracy.
+     */
     public AlgorithmBarnesHut() {
+        this(0);
+    }
+
+    /**
+     * Construct the algorithm with the specified accuracy preset.
+     *
+     * @param accuracy the accuracy preset
+     */
+    public AlgorithmBarnesHut(Accuracy accuracy) {
+        this(0);
+        this.setAccuracy(accuracy);
+    }
+
+    /**
+     * Construct the algorithm with the specified number of threads.
+     *
+     * @param parallelism the number of threads of the force phase, 1 to run
+     *                    on the simulation thread, 0 for all the available
+     *                    processors
+     */
+    public AlgorithmBarnesHut(int parallelism) {
+        this.setParallelism(parallelism);
+        this.setAccuracy(Accuracy.BALANCED);
+    }
+
+    /**
+     * @return the opening angle: a node of the tree is approximated with its
+     * center of mass when the ratio between its side and its distance is
+     * less than this angle
+     */
+    public double getTheta() {
+        // simulations saved before it was configurable used 2
+        return this.theta > 0 ? this.theta : 2;
+    }
+
+    /**
+     * Sets the opening angle, smaller is more accurate but slower.
+     *
+     * @param theta the new opening angle
+     */
+    public void setTheta(double theta) {
+        if (theta <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.theta = theta;
+    }
+
+    /**
+     * Sets the opening angle of an accuracy preset.
+     *
+     * @param accuracy the preset
+     */
+    public void setAccuracy(Accuracy accuracy) {
+        this.setTheta(accuracy.getTheta());
+    }
+
+    /**
+     * @return the number of threads of the force phase, 0 if it uses all the
+     * available processors
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Changes the number of threads used by the force phase.
+     *
+     * @param parallelism the number of threads, 1 to run on the simulation
+     *                    thread, 0 for all the available processors
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.parallelism = parallelism;
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    /**
+     * @return the largest side the tree's root can have
+     */
+    public double getMaxLength() {
+        return this.maxLength > 0 ? this.maxLength : MAX_LENGTH;
+    }
+
+    /**
+     * Sets the largest side the tree's root can have. The root is fitted to the
+     * bodies at every step, the bodies that are spread beyond this limit are
+     * handled according to the {@link OutOfBounds} policy.
+     *
+     * @param maxLength the limit, in meters
+     */
+    public void setMaxLength(double maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return the policy for the bodies that do not fit in the tree
+     */
+    public OutOfBounds getOutOfBounds() {
+        return this.outOfBounds != null ? this.outOfBounds : OutOfBounds.DIRECT_SUM;
+    }
+
+    /**
+     * Sets the policy for the bodies that do not fit in the tree.
+     *
+     * @param outOfBounds the new policy
+     */
+    public void setOutOfBounds(OutOfBounds outOfBounds) {
+        this.outOfBounds = outOfBounds;
+    }
+
+    /*
+     * A model already run on the workers of a pool shares them. With all the
+     * available processors it is the common pool, with the calling thread, so
+     * the instances replaced from the view do not leave threads behind. Only
+     * a given number of threads needs a pool of its own: it is not
+     * serialized, it is created on first use.
+     */
+    private ForkJoinPool getPool() {
+        ForkJoinPool current = ForkJoinTask.getPool();
+        if (current != null) {
+            return current.getParallelism() > 1 ? current : null;
+        }
+        if (this.parallelism == 0) {
+            return Runtime.getRuntime().availableProcessors() > 1 ? ForkJoinPool.commonPool() : null;
+        }
+        if (this.parallelism == 1) {
+            return null;
+        }
+        if (this.pool == null) {
+            this.pool = new ForkJoinPool(this.parallelism);
+        }
+        return this.pool;
     }
 
+    /**
+     * With the {@link OutOfBounds#REMOVE} policy the bodies that do not fit in
+     * the tree are removed from the simulation once per step, before the
+     * integrator moves the others.
+     */
     @Override
-    public List<Body> exceuteUpdate(List<Body> bodies, double sec) {
-        Quad q = new Quad(0, 0, 2 * 1e18);
-        BHTree thetree = new BHTree(q);
-        // If the body is still on the screen, add it to the tree
-        for (Body b : bodies) {
-            if (b.in(q)) thetree.insert(b);
+    protected void move(BodyStore bodies, double sec) {
+        if (this.getOutOfBounds() == OutOfBounds.REMOVE) {
+            this.removeEscaped(bodies);
         }
-        //Now, use out methods in BHTree to update the forces,
-        //traveling recursively through the tree
-        for (Body b : bodies) {
-            b.resetForce();
-            if (b.in(q)) {
-                thetree.updateForce(b);
+        super.move(bodies, sec);
+    }
+
+    /* Removes the bodies which do not fit in the tree, from the list and the store */
+    private void removeEscaped(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.posX();
+        double[] y = bodies.posY();
+        BHTree thetree = this.fitTree(bodies);
+        boolean[] keep = null;
+        for (int i = 0; i < n; i++) {
+            if (!thetree.contains(x[i], y[i])) {
+                if (keep == null) {
+                    keep = new boolean[n];
+                    Arrays.fill(keep, true);
+                }
+                keep[i] = false;
+            }
+        }
+        if (keep != null) {
+            bodies.compact(keep, Collections.emptyList());
+        }
+    }
+
+    /*
+     * Resets the tree to an empty root fitted to the bodies: the tightest
+     * square around them, unless they are spread too much. Then it is centered
+     * on their center of mass and the farthest bodies are left out.
+     */
+    private BHTree fitTree(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.posX();
+        double[] y = bodies.posY();
+        double[] m = bodies.mass();
+
+        // Bounding box and center of mass of the bodies
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double sumM = 0, sumMX = 0, sumMY = 0;
+        for (int i = 0; i < n; i++) {
+            if (isFinite(x[i], y[i])) {
+                minX = Math.min(minX, x[i]);
+                maxX = Math.max(maxX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxY = Math.max(maxY, y[i]);
+                sumM += m[i];
+                sumMX += m[i] * x[i];
+                sumMY += m[i] * y[i];
             }
-            b.updatePos(sec);
         }
-        return bodies;
+
+        double side = Math.max(maxX - minX, maxY - minY);
+        double xmid, ymid;
+        if (side <= this.getMaxLength()) {
+            xmid = (minX + maxX) / 2;
+            ymid = (minY + maxY) / 2;
+            side = side > 0 ? side * (1 + MARGIN) : 1;
+        } else {
+            xmid = sumM > 0 ? sumMX / sumM : (minX + maxX) / 2;
+            ymid = sumM > 0 ? sumMY / sumM : (minY + maxY) / 2;
+            side = this.getMaxLength();
+        }
+
+        // The node pool is reused from the previous step
+        if (this.tree == null) {
+            this.tree = new BHTree();
+        }
+        this.tree.reset(xmid, ymid, side);
+        return this.tree;
+    }
+
+    /**
+     * Builds the tree and accumulates in the store the force applied to every
+     * body, without moving them. The bodies that do not fit in the tree feel it
+     * and are felt by every body through a direct sum: with the
+     * {@link OutOfBounds#REMOVE} policy they are only the ones which left it
+     * during the current step, they are removed at the next one.
+     *
+     * @param bodies the bodies, with their forces reset
+     */
+    @Override
+    public void computeForces(BodyStore bodies) {
+        int n = bodies.size();
+        double[] x = bodies.posX();
+        double[] y = bodies.posY();
+        boolean[] active = bodies.active();
+
+        if (this.escaped == null || this.escaped.length < n) {
+            this.escaped = new int[n];
+        }
+        BHTree thetree = this.fitTree(bodies);
+        thetree.build(bodies, this.getPool());
+        int numEscaped = 0;
+        for (int i = 0; i < n; i++) {
+            if (!thetree.contains(x[i], y[i])) {
+                this.escaped[numEscaped++] = i;
+            }
+        }
+
+        //Now, use out methods in BHTree to update the forces,
+        //traveling recursively through the tree. The tree is only read,
+        //so every body can be handled by a different thread.
+        //Bodies outside of the tree are summed directly.
+        //The bodies of the tree are visited in Z-order, so consecutive bodies
+        //walk through almost the same nodes.
+        int[] out = this.escaped;
+        int outSize = numEscaped;
+        int[] order = thetree.bodies();
+        int inSize = thetree.numBodies();
+        double theta = this.getTheta();
+        ParallelRange.forEach(this.getPool(), 0, inSize + outSize, k -> {
+            int i = k < inSize ? order[k] : out[k - inSize];
+            if (active[i] && isFinite(x[i], y[i])) {
+                thetree.updateForce(bodies, i, theta);
+                for (int l = 0; l < outSize; l++) {
+                    int j = out[l];
+                    if (j != i && isFinite(x[j], y[j])) {
+                        bodies.addForce(i, j);
+                    }
+                }
+            }
+        });
+    }
+
+    private static boolean isFinite(double x, double y) {
+        return !Double.isNaN(x) && !Double.isInfinite(x) && !Double.isNaN(y) && !Double.isInfinite(y);
     }
 }
@@ -1,19 +1,27 @@
 package atlas.model.rules;
 
-import atlas.model.Body;
-
-import java.util.ArrayList;
-import java.util.List;
+import atlas.model.BodyStore;
+import atlas.model.DirectSum;
 
 /**
  * This algorithm computes, for each body, the net force from all other bodies.
+ * Every pair is computed once, with equal and opposite forces, so the momentum
+ * is conserved exactly: it is the reference of the other algorithms.
  * Complexity is N^2. Pros: accurate results, simple. Cons: impossible to use
  * when there are a lot of elements.
+ * <p>
+ * Optionally the forces are summed by a kernel the JIT compiler can vectorize,
+ * many bodies at a time: it computes every pair from both sides, so it is
+ * faster only where the vector instructions pay for that.
  */
 public class AlgorithmBruteForce extends Algorithm {
 
     private static final long serialVersionUID = -766146245161256993L;
 
+    private boolean vectorized;
+    private transient DirectSum kernel;
+    private transient boolean[] targets;
+
     /**
      * Default empty constructor.
      */
@@ -32,24 +40,60 @@ public class AlgorithmBruteForce extends Algorithm {
         super.collisionStrategy = collisionStrategy;
     }
 
+    /**
+     * @return true if the forces are summed by the vectorized kernel
+     */
+    public boolean isVectorized() {
+        return this.vectorized;
+    }
+
+    /**
+     * Chooses how the forces are summed: every pair once, or every body
+     * against all the others through the vectorized kernel.
+     *
+     * @param vectorized true to use the vectorized kernel
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
     @Override
-    public List<Body> exceuteUpdate(List<Body> bodies, double sec) {
-        // 2 loops --> N^2 complexity
-        ArrayList<Body> copy = new ArrayList<>(bodies);
-        for (Body b : copy) {
-            if (b.isAttracting()) {
-                b.resetForce();
-                for (Body c : copy) {
-                    if (!b.equals(c)) {
-                        if (bodies.contains(b) && bodies.contains(c) && super.collisionStrategy != null) {
-                            super.collisionStrategy.manageCollision(bodies, b, c);
-                        }
-                        b.addForce(c);
-                    }
+    public void computeForces(BodyStore bodies) {
+        if (this.vectorized) {
+            this.addForcesVectorized(bodies);
+            return;
+        }
+        boolean[] attracting = bodies.attracting();
+        boolean[] active = bodies.active();
+        // every pair once, with equal and opposite forces --> N^2 / 2
+        for (int i = 0; i < bodies.size(); i++) {
+            boolean first = attracting[i] && active[i];
+            for (int j = i + 1; j < bodies.size(); j++) {
+                boolean second = attracting[j] && active[j];
+                if (first && second) {
+                    bodies.addMutualForce(i, j);
+                } else if (first) {
+                    bodies.addForce(i, j);
+                } else if (second) {
+                    bodies.addForce(j, i);
                 }
-                b.updatePos(sec);
             }
         }
-        return bodies;
+    }
+
+    /* Every body against all the others --> N^2, through the kernel */
+    private void addForcesVectorized(BodyStore bodies) {
+        if (this.kernel == null) {
+            this.kernel = new DirectSum();
+        }
+        if (this.targets == null || this.targets.length < bodies.size()) {
+            this.targets = new boolean[bodies.size()];
+        }
+        boolean[] attracting = bodies.attracting();
+        boolean[] active = bodies.active();
+        for (int i = 0; i < bodies.size(); i++) {
+            this.targets[i] = attracting[i] && active[i];
+        }
+        this.kernel.addForces(bodies, this.targets);
     }
 }
@@ -0,0 +1,74 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+import atlas.model.FMMTree;
+
+/**
+ * This algorithm is the Fast Multipole Method: like the Barnes-Hut it groups
+ * bodies in a quadtree, but far cells interact with each other as a whole
+ * (cell to cell) instead of body to cell, and the resulting fields are passed
+ * down the tree to the bodies. Complexity is N. Pros: fastest with hundreds of
+ * thousands of bodies. Cons: some memory for the expansions of each cell.
+ */
+public class AlgorithmFastMultipole extends Algorithm {
+
+    private static final long serialVersionUID = 4385722931648723340L;
+
+    private static final double DEFAULT_THETA = 0.5;
+
+    private double theta;
+    private transient FMMTree tree;
+
+    /**
+     * Construct the algorithm with the default opening angle.
+     */
+    public AlgorithmFastMultipole() {
+        this(DEFAULT_THETA);
+    }
+
+    /**
+     * Construct the algorithm with the specified opening angle.
+     *
+     * @param theta two cells interact as a whole when the sum of their radii
+     *              is less than theta times their distance
+     */
+    public AlgorithmFastMultipole(double theta) {
+        this.setTheta(theta);
+    }
+
+    /**
+     * @return the opening angle
+     */
+    public double getTheta() {
+        return this.theta > 0 ? this.theta : DEFAULT_THETA;
+    }
+
+    /**
+     * Sets the opening angle, smaller is more accurate but slower.
+     *
+     * @param theta the new opening angle
+     */
+    public void setTheta(double theta) {
+        if (theta <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.theta = theta;
+    }
+
+    /**
+     * Builds the tree and accumulates in the store the force applied to every
+     * body, without moving them. Inactive bodies get their force as well: the
+     * cells interact as a whole, so skipping them would save very little.
+     *
+     * @param bodies the bodies, with their forces reset
+     */
+    @Override
+    public void computeForces(BodyStore bodies) {
+        // The cell pool is reused from the previous step
+        if (this.tree == null) {
+            this.tree = new FMMTree();
+        }
+        this.tree.build(bodies);
+        this.tree.updateForces(this.getTheta());
+    }
+}
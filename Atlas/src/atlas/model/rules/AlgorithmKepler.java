@@ -0,0 +1,255 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+import atlas.model.BodyType;
+
+/**
+ * Patched conics: every body on a bound orbit around its parent, and not
+ * perturbed much by the largest bodies, follows the exact two-body orbit
+ * around it, computed by solving Kepler's equation. Its position does not
+ * depend on the length of the step, which can be as large as a year, and its
+ * force is not computed at all. The other bodies (the ones without a parent,
+ * i.e. the stars, the perturbed ones and the ones passing by) are integrated
+ * as in the {@link AlgorithmTwoBody}. The choice is made again at every step.
+ * <p>
+ * A body is perturbed when the tidal acceleration of the largest bodies, that
+ * is the difference between their pull on the body and on its parent, goes
+ * beyond a fraction (the threshold) of the pull of the parent.
+ */
+public class AlgorithmKepler extends AlgorithmTwoBody {
+
+	private static final long serialVersionUID = 4431936416744802351L;
+
+	/**
+	 * Default ratio between the tidal acceleration and the pull of the parent
+	 * beyond which a body is integrated.
+	 */
+	public static final double THRESHOLD = 0.05;
+
+	private static final int MAX_ITERATIONS = 50;
+	private static final double TOLERANCE = 1e-12;
+
+	/* 0 means the default, as in simulations saved before it existed */
+	private double threshold;
+
+	/* Parent of every body on a conic, -1 for the integrated bodies */
+	private transient int[] parent;
+	/* State relative to the parent at the end of the step */
+	private transient double[] relX;
+	private transient double[] relY;
+	private transient double[] relVX;
+	private transient double[] relVY;
+	/* 0 to do, 1 in progress, 2 done */
+	private transient byte[] state;
+
+	/**
+	 * @return the ratio between the tidal acceleration and the pull of the
+	 *         parent beyond which a body is integrated
+	 */
+	public double getThreshold() {
+		return this.threshold > 0 ? this.threshold : THRESHOLD;
+	}
+
+	/**
+	 * Sets the ratio between the tidal acceleration and the pull of the parent
+	 * beyond which a body is integrated, smaller is more accurate but slower.
+	 *
+	 * @param threshold
+	 *            the new threshold
+	 */
+	public void setThreshold(double threshold) {
+		if (threshold <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.threshold = threshold;
+	}
+
+	/**
+	 * The bodies on a conic are left out of the force phase, the integrator
+	 * moves the other ones, then the bodies on a conic are put on their orbit
+	 * around the new position of their parent, parents first.
+	 */
+	@Override
+	protected void move(BodyStore bodies, double sec) {
+		int n = bodies.size();
+		this.ensureCapacity(n);
+		int[] targets = this.selectTargets(bodies);
+		boolean[] active = bodies.active();
+		for (int i = 0; i < n; i++) {
+			int p = this.conicParent(bodies, i, targets);
+			double[] s = p < 0 ? null
+					: kepler(bodies.posX()[i] - bodies.posX()[p], bodies.posY()[i] - bodies.posY()[p],
+							bodies.velX()[i] - bodies.velX()[p], bodies.velY()[i] - bodies.velY()[p],
+							BodyType.G * (bodies.mass()[p] + bodies.mass()[i]), sec);
+			if (s != null) {
+				this.relX[i] = s[0];
+				this.relY[i] = s[1];
+				this.relVX[i] = s[2];
+				this.relVY[i] = s[3];
+				active[i] = false;
+			}
+			this.parent[i] = s != null ? p : -1;
+			this.state[i] = 0;
+		}
+
+		this.getIntegrator().step(bodies, this, sec);
+
+		for (int i = 0; i < n; i++) {
+			this.propagate(bodies, i);
+			active[i] = true;
+		}
+	}
+
+	/*
+	 * The parent of the body if it can follow a conic around it: the orbit is
+	 * bound and the tidal acceleration of the targets is below the threshold.
+	 */
+	private int conicParent(BodyStore bodies, int i, int[] targets) {
+		int p = bodies.attracting()[i] ? this.parentOf(bodies, i) : -1;
+		if (p < 0 || p == i) {
+			return -1;
+		}
+		double[] x = bodies.posX();
+		double[] y = bodies.posY();
+		double dx = x[i] - x[p];
+		double dy = y[i] - y[p];
+		double dvx = bodies.velX()[i] - bodies.velX()[p];
+		double dvy = bodies.velY()[i] - bodies.velY()[p];
+		double r = Math.sqrt(dx * dx + dy * dy);
+		double mu = BodyType.G * (bodies.mass()[p] + bodies.mass()[i]);
+		if (r == 0 || !(dvx * dvx + dvy * dvy < 2 * mu / r)) {
+			return -1;
+		}
+		double tidalX = 0;
+		double tidalY = 0;
+		for (int j : targets) {
+			if (j != i && j != p) {
+				double m = BodyType.G * bodies.mass()[j];
+				double ix = x[j] - x[i];
+				double iy = y[j] - y[i];
+				double px = x[j] - x[p];
+				double py = y[j] - y[p];
+				double ri = Math.pow(ix * ix + iy * iy, 1.5);
+				double rp = Math.pow(px * px + py * py, 1.5);
+				tidalX += m * (ix / ri - px / rp);
+				tidalY += m * (iy / ri - py / rp);
+			}
+		}
+		double pull = BodyType.G * bodies.mass()[p] / (r * r);
+		return Math.sqrt(tidalX * tidalX + tidalY * tidalY) <= this.getThreshold() * pull ? p : -1;
+	}
+
+	/* Puts the body on its conic, after its parent */
+	private void propagate(BodyStore bodies, int i) {
+		int p = this.parent[i];
+		if (p < 0 || this.state[i] == 2) {
+			return;
+		}
+		if (this.state[i] == 1) {
+			// a cycle of parents, the parent is left where the integrator put it
+			return;
+		}
+		this.state[i] = 1;
+		this.propagate(bodies, p);
+		bodies.posX()[i] = bodies.posX()[p] + this.relX[i];
+		bodies.posY()[i] = bodies.posY()[p] + this.relY[i];
+		bodies.velX()[i] = bodies.velX()[p] + this.relVX[i];
+		bodies.velY()[i] = bodies.velY()[p] + this.relVY[i];
+		this.state[i] = 2;
+	}
+
+	/**
+	 * Solves the two-body problem with universal variables.
+	 *
+	 * @param x
+	 *            relative position, x
+	 * @param y
+	 *            relative position, y
+	 * @param vx
+	 *            relative velocity, x
+	 * @param vy
+	 *            relative velocity, y
+	 * @param mu
+	 *            gravitational parameter of the two bodies
+	 * @param dt
+	 *            time of flight
+	 * @return the relative position and velocity after the time of flight, as
+	 *         x, y, vx, vy, null if the equation does not converge
+	 */
+	static double[] kepler(double x, double y, double vx, double vy, double mu, double dt) {
+		double r0 = Math.sqrt(x * x + y * y);
+		double vr0 = (x * vx + y * vy) / r0;
+		double alpha = 2 / r0 - (vx * vx + vy * vy) / mu;
+		double sqrtMu = Math.sqrt(mu);
+		if (alpha > 0) {
+			// whole periods change nothing
+			double period = 2 * Math.PI / Math.sqrt(mu * alpha * alpha * alpha);
+			dt = Math.IEEEremainder(dt, period);
+		}
+
+		// Newton's method on the universal Kepler's equation
+		double chi = sqrtMu * Math.abs(alpha) * dt;
+		boolean converged = false;
+		for (int k = 0; k < MAX_ITERATIONS && !converged; k++) {
+			double z = alpha * chi * chi;
+			double c = stumpffC(z);
+			double s = stumpffS(z);
+			double f = r0 * vr0 / sqrtMu * chi * chi * c + (1 - alpha * r0) * chi * chi * chi * s + r0 * chi
+					- sqrtMu * dt;
+			double df = r0 * vr0 / sqrtMu * chi * (1 - z * s) + (1 - alpha * r0) * chi * chi * c + r0;
+			double step = f / df;
+			chi -= step;
+			converged = Math.abs(step) <= TOLERANCE * Math.max(1, Math.abs(chi));
+		}
+		if (!converged || Double.isNaN(chi)) {
+			return null;
+		}
+
+		// Lagrange coefficients
+		double z = alpha * chi * chi;
+		double c = stumpffC(z);
+		double s = stumpffS(z);
+		double f = 1 - chi * chi / r0 * c;
+		double g = dt - chi * chi * chi * s / sqrtMu;
+		double nx = f * x + g * vx;
+		double ny = f * y + g * vy;
+		double r = Math.sqrt(nx * nx + ny * ny);
+		double df = sqrtMu / (r * r0) * (z * chi * s - chi);
+		double dg = 1 - chi * chi / r * c;
+		return new double[] { nx, ny, df * x + dg * vx, df * y + dg * vy };
+	}
+
+	private static double stumpffC(double z) {
+		if (Math.abs(z) < 1e-3) {
+			return 0.5 - z / 24 + z * z / 720;
+		}
+		if (z > 0) {
+			return (1 - Math.cos(Math.sqrt(z))) / z;
+		}
+		return (Math.cosh(Math.sqrt(-z)) - 1) / -z;
+	}
+
+	private static double stumpffS(double z) {
+		if (Math.abs(z) < 1e-3) {
+			return 1.0 / 6 - z / 120 + z * z / 5040;
+		}
+		if (z > 0) {
+			double sz = Math.sqrt(z);
+			return (sz - Math.sin(sz)) / (sz * sz * sz);
+		}
+		double sz = Math.sqrt(-z);
+		return (Math.sinh(sz) - sz) / (sz * sz * sz);
+	}
+
+	private void ensureCapacity(int n) {
+		if (this.parent != null && this.parent.length >= n) {
+			return;
+		}
+		this.parent = new int[n];
+		this.relX = new double[n];
+		this.relY = new double[n];
+		this.relVX = new double[n];
+		this.relVY = new double[n];
+		this.state = new byte[n];
+	}
+}
@@ -1,17 +1,20 @@
 package atlas.model.rules;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.Optional;
 
 import atlas.model.Body;
+import atlas.model.BodyStore;
 
 /**
  * This algorithm computes, for each body, the net force from a few selected
  * bodies (the parent of the body and a small number of the largest bodies in
  * the simulation). Complexity is N. Pros: fastest. Cons: not very precise over
  * time.
- * 
+ * <p>
+ * The largest bodies and the parents, by index, are found once for every
+ * generation of the store, that is when bodies are added or removed or their
+ * masses change, and reused by all the steps until then.
  */
 public class AlgorithmTwoBody extends Algorithm {
 
@@ -19,38 +22,96 @@ public class AlgorithmTwoBody extends Algorithm {
 
 	private static final int BODIES_TO_CONSIDER = 5;
 
-	@Override
-	public List<Body> exceuteUpdate(List<Body> bodies, double sec) {
-		// select largest body of the first one
-		List<Body> ordered = bodies.stream().sorted((i, j) -> (int) (j.getMass() - i.getMass()))
-				.collect(Collectors.toList());
-
-		List<Body> targets = new LinkedList<>();
-		for (int i = 0; i < BODIES_TO_CONSIDER && i < ordered.size(); i++) {
-			targets.add(ordered.get(i));
-		}
+	/* Derived from the store, until its generation changes */
+	private transient BodyStore store;
+	private transient int generation;
+	private transient int[] targets;
+	private transient int[] parents;
 
-		for (Body b : bodies) {
-			if (b.isAttracting()) {
-				b.resetForce();
+	@Override
+	public void computeForces(BodyStore bodies) {
+		int[] targets = this.selectTargets(bodies);
 
-				/* Add the force from the parent */
-				b.getProperties().getParent().ifPresent(i -> {
-					if (ordered.contains(i)) {
-						b.addForce(i);
-					}
-				});
+		boolean[] attracting = bodies.attracting();
+		boolean[] active = bodies.active();
+		for (int i = 0; i < bodies.size(); i++) {
+			if (attracting[i] && active[i]) {
+				/* Add the force from the parent, if it is still in the simulation */
+				int p = this.parentOf(bodies, i);
+				if (p >= 0) {
+					bodies.addForce(i, p);
+				}
 
 				/* Add the force from a few selected bodies */
-				targets.forEach(j -> {
-					if (!b.equals(j) && !j.equals(b.getProperties().getParent().orElse(b))) {
-						b.addForce(j);
+				for (int j : targets) {
+					if (j != i && j != p) {
+						bodies.addForce(i, j);
 					}
-				});
+				}
+			}
+		}
+	}
+
+	/**
+	 * Selects the bodies every body is attracted by, besides its parent.
+	 * 
+	 * @param bodies
+	 *            the bodies of the simulation
+	 * @return the indices of the largest bodies, heaviest first
+	 */
+	protected int[] selectTargets(BodyStore bodies) {
+		this.refresh(bodies);
+		return this.targets;
+	}
+
+	/**
+	 * @param bodies
+	 *            the bodies of the simulation
+	 * @param i
+	 *            the index of a body
+	 * @return the index of the parent of the body, -1 if it has none or the
+	 *         parent is not in the simulation any more
+	 */
+	protected int parentOf(BodyStore bodies, int i) {
+		this.refresh(bodies);
+		return this.parents[i];
+	}
 
-				b.updatePos(sec);
+	/*
+	 * Finds the largest bodies, in a single pass which keeps the heaviest ones
+	 * seen so far in order, and the parents, if the store has changed.
+	 */
+	private void refresh(BodyStore bodies) {
+		if (this.store == bodies && this.generation == bodies.generation() && this.targets != null) {
+			return;
+		}
+		this.store = bodies;
+		this.generation = bodies.generation();
+		int n = bodies.size();
+		double[] mass = bodies.mass();
+		int[] top = new int[BODIES_TO_CONSIDER];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (count == top.length && mass[i] <= mass[top[count - 1]]) {
+				continue;
 			}
+			// equal masses keep the order of the simulation
+			int k = Math.min(count, top.length - 1);
+			while (k > 0 && mass[top[k - 1]] < mass[i]) {
+				top[k] = top[k - 1];
+				k--;
+			}
+			top[k] = i;
+			count = Math.min(count + 1, top.length);
+		}
+		this.targets = count == top.length ? top : Arrays.copyOf(top, count);
+
+		if (this.parents == null || this.parents.length < n) {
+			this.parents = new int[n];
+		}
+		for (int i = 0; i < n; i++) {
+			Optional<Body> parent = bodies.get(i).getProperties().getParent();
+			this.parents[i] = parent.isPresent() ? bodies.indexOf(parent.get()) : -1;
 		}
-		return bodies;
 	}
 }
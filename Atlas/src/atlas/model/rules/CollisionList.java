@@ -0,0 +1,90 @@
+package atlas.model.rules;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import atlas.model.Body;
+import atlas.model.BodyStore;
+
+/**
+ * The list of bodies given to a {@link CollisionStrategy} during a collision
+ * pass on a store. Removed bodies are only flagged as dead, in constant time,
+ * and added bodies are kept aside: the simulation's list and the store are
+ * compacted once, by {@link #apply()}, at the end of the pass. Until then the list shows the
+ * loaded bodies, dead ones included, followed by the added ones.
+ */
+class CollisionList extends AbstractList<Body> {
+
+	private final BodyStore store;
+	private final boolean[] alive;
+	private final List<Body> added = new ArrayList<>();
+	private boolean changed;
+
+	/**
+	 * Construct the list of the bodies loaded in the store, all alive.
+	 * 
+	 * @param store
+	 *            the bodies of the simulation
+	 */
+	CollisionList(BodyStore store) {
+		this.store = store;
+		this.alive = new boolean[store.size()];
+		Arrays.fill(this.alive, true);
+	}
+
+	/**
+	 * @param i
+	 *            the index of a body in the store
+	 * @return false if the body has been removed
+	 */
+	boolean isAlive(int i) {
+		return this.alive[i];
+	}
+
+	/**
+	 * @return true if bodies have been removed or added
+	 */
+	boolean isChanged() {
+		return this.changed;
+	}
+
+	/**
+	 * Removes the dead bodies from the simulation's list and from the store,
+	 * and appends the added ones to both, in a single pass.
+	 */
+	void apply() {
+		this.store.compact(this.alive, this.added);
+	}
+
+	@Override
+	public Body get(int index) {
+		return index < this.alive.length ? this.store.get(index) : this.added.get(index - this.alive.length);
+	}
+
+	@Override
+	public int size() {
+		return this.alive.length + this.added.size();
+	}
+
+	@Override
+	public boolean add(Body b) {
+		this.changed = true;
+		return this.added.add(b);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Body)) {
+			return false;
+		}
+		int i = this.store.indexOf((Body) o);
+		if (i >= 0 && this.alive[i]) {
+			this.alive[i] = false;
+			this.changed = true;
+			return true;
+		}
+		return this.added.remove(o);
+	}
+}
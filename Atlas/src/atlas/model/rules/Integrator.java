@@ -0,0 +1,83 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+
+/**
+ * A generic integrator, it decides how the bodies are moved along a time step
+ * once the algorithm knows how to compute the forces between them.
+ *
+ */
+public abstract class Integrator implements java.io.Serializable {
+
+	private static final long serialVersionUID = -3419250472815304861L;
+
+	/**
+	 * Advances the bodies by a time step. Only the attracting bodies are moved.
+	 * 
+	 * @param bodies
+	 *            the bodies of the simulation, already loaded in the store
+	 * @param alg
+	 *            the algorithm computing the forces
+	 * @param sec
+	 *            time step of the update
+	 */
+	public abstract void step(BodyStore bodies, Algorithm alg, double sec);
+
+	/**
+	 * Tells whether the integrator keeps its accuracy when the steps get
+	 * longer, dividing them on its own where needed.
+	 * 
+	 * @return true if longer steps do not make the simulation less accurate
+	 */
+	public boolean isAdaptive() {
+		return false;
+	}
+
+	/**
+	 * Computes again the forces at the current positions.
+	 * 
+	 * @param bodies
+	 *            the bodies of the simulation
+	 * @param alg
+	 *            the algorithm computing the forces
+	 */
+	protected final void computeForces(BodyStore bodies, Algorithm alg) {
+		bodies.resetForces();
+		alg.computeForces(bodies);
+	}
+
+	/**
+	 * Changes the velocities of the attracting bodies with their current
+	 * forces.
+	 * 
+	 * @param bodies
+	 *            the bodies of the simulation
+	 * @param dt
+	 *            duration of the kick
+	 */
+	protected final void kick(BodyStore bodies, double dt) {
+		boolean[] attracting = bodies.attracting();
+		for (int i = 0; i < bodies.size(); i++) {
+			if (attracting[i]) {
+				bodies.kick(i, dt);
+			}
+		}
+	}
+
+	/**
+	 * Moves the attracting bodies with their current velocities.
+	 * 
+	 * @param bodies
+	 *            the bodies of the simulation
+	 * @param dt
+	 *            duration of the drift
+	 */
+	protected final void drift(BodyStore bodies, double dt) {
+		boolean[] attracting = bodies.attracting();
+		for (int i = 0; i < bodies.size(); i++) {
+			if (attracting[i]) {
+				bodies.drift(i, dt);
+			}
+		}
+	}
+}
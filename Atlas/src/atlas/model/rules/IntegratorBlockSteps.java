@@ -0,0 +1,259 @@
+package atlas.model.rules;
+
+import java.util.Arrays;
+
+import atlas.model.Body;
+import atlas.model.BodyStore;
+
+/**
+ * A specific integrator in which every body has its own time step (block time
+ * steps): the kick-drift-kick leapfrog, where the step of each body is the
+ * update divided by a power of two. Fast bodies, like moons, are kicked many
+ * times during an update while slow ones, like the outer planets, only once,
+ * and the forces are computed only for the bodies that are due. The step of a
+ * body follows the time scale |a| / |da/dt| of its acceleration, estimated
+ * from the previous update or, for new bodies, from a short probe drift.
+ * While the forces of the due bodies are computed, the other bodies are
+ * placed where their acceleration would take them (a second order
+ * prediction) instead of on their straight drift.
+ * <p>
+ * The bodies the algorithm leaves out of the force phase (their active flag
+ * is cleared when the update starts) are neither kicked nor given a step of
+ * their own.
+ *
+ */
+public class IntegratorBlockSteps extends Integrator {
+
+	private static final long serialVersionUID = 2205831976338472159L;
+
+	/**
+	 * Default fraction of the time scale of the acceleration used as step.
+	 */
+	public static final double ETA = 0.005;
+	/* The shortest step is the update divided by 2^MAX_BIN */
+	private static final int MAX_BIN = 10;
+
+	private double eta;
+	/* Accelerations of the bodies at the start of the last update */
+	private transient Body[] lastRefs;
+	private transient double[] lastAccX;
+	private transient double[] lastAccY;
+	private transient double lastSec;
+	/* Accelerations of the bodies at their last force computation */
+	private transient double[] accX;
+	private transient double[] accY;
+	private transient double[] jerk;
+	private transient int[] bin;
+	/* Active flags given by the algorithm, restored at the end of the update */
+	private transient boolean[] enabled;
+
+	/**
+	 * Construct the integrator with the default accuracy.
+	 */
+	public IntegratorBlockSteps() {
+		this(ETA);
+	}
+
+	/**
+	 * Construct the integrator with the specified accuracy.
+	 * 
+	 * @param eta
+	 *            the fraction of the time scale of the acceleration used as
+	 *            step
+	 */
+	public IntegratorBlockSteps(double eta) {
+		this.setEta(eta);
+	}
+
+	/**
+	 * The steps of the bodies follow their accelerations, whatever the length
+	 * of the update.
+	 */
+	@Override
+	public boolean isAdaptive() {
+		return true;
+	}
+
+	/**
+	 * @return the fraction of the time scale of the acceleration used as step
+	 */
+	public double getEta() {
+		return this.eta > 0 ? this.eta : ETA;
+	}
+
+	/**
+	 * Sets the fraction of the time scale of the acceleration used as step,
+	 * smaller is more accurate but slower.
+	 * 
+	 * @param eta
+	 *            the new fraction
+	 */
+	public void setEta(double eta) {
+		if (eta <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.eta = eta;
+	}
+
+	@Override
+	public void step(BodyStore bodies, Algorithm alg, double sec) {
+		int n = bodies.size();
+		this.ensureCapacity(n);
+		boolean[] attracting = bodies.attracting();
+		boolean[] active = bodies.active();
+		double[] x = bodies.posX();
+		double[] y = bodies.posY();
+		double[] vx = bodies.velX();
+		double[] vy = bodies.velY();
+		boolean[] enabled = this.enabled;
+		System.arraycopy(active, 0, enabled, 0, n);
+
+		// Every body is synchronized at the start of the update
+		this.computeForces(bodies, alg);
+		this.storeAccelerations(bodies);
+		this.estimateJerks(bodies, alg, sec);
+		int maxBin = this.assignBins(bodies, sec);
+
+		int substeps = 1 << maxBin;
+		double h = sec / substeps;
+		for (int s = 0; s < substeps; s++) {
+			// First half kick of the bodies whose step starts now
+			for (int i = 0; i < n; i++) {
+				int period = substeps >> this.bin[i];
+				if (attracting[i] && enabled[i] && s % period == 0) {
+					vx[i] += h * period / 2 * this.accX[i];
+					vy[i] += h * period / 2 * this.accY[i];
+				}
+			}
+			this.drift(bodies, h);
+			// New forces and second half kick of the bodies whose step ends now
+			for (int i = 0; i < n; i++) {
+				active[i] = attracting[i] && enabled[i] && (s + 1) % (substeps >> this.bin[i]) == 0;
+				this.predict(x, y, i, !active[i] && attracting[i] && enabled[i], s + 1, substeps, h, 1);
+			}
+			this.computeForces(bodies, alg);
+			for (int i = 0; i < n; i++) {
+				this.predict(x, y, i, !active[i] && attracting[i] && enabled[i], s + 1, substeps, h, -1);
+			}
+			this.storeAccelerations(bodies);
+			for (int i = 0; i < n; i++) {
+				if (active[i]) {
+					int period = substeps >> this.bin[i];
+					vx[i] += h * period / 2 * this.accX[i];
+					vy[i] += h * period / 2 * this.accY[i];
+				}
+			}
+		}
+		System.arraycopy(enabled, 0, active, 0, n);
+	}
+
+	/*
+	 * Moves (sign 1) a body in the middle of its step from its straight drift
+	 * to the position predicted by its acceleration, or back (sign -1). The
+	 * kick-drift-kick drift is off by a * t * (T - t) / 2 at the time t of a
+	 * step T.
+	 */
+	private void predict(double[] x, double[] y, int i, boolean inStep, int s, int substeps, double h, int sign) {
+		if (inStep) {
+			int period = substeps >> this.bin[i];
+			double t = (s % period) * h;
+			double c = -sign * t * (period * h - t) / 2;
+			x[i] += c * this.accX[i];
+			y[i] += c * this.accY[i];
+		}
+	}
+
+	/* Keeps the accelerations of the active bodies */
+	private void storeAccelerations(BodyStore bodies) {
+		boolean[] active = bodies.active();
+		for (int i = 0; i < bodies.size(); i++) {
+			if (active[i]) {
+				this.accX[i] = bodies.forceX()[i] / bodies.mass()[i];
+				this.accY[i] = bodies.forceY()[i] / bodies.mass()[i];
+			}
+		}
+	}
+
+	/*
+	 * Estimates the derivative of the acceleration of every body from the
+	 * acceleration at the start of the last update. Bodies without history
+	 * (i.e. just added) get their acceleration computed again after a short
+	 * drift of all the bodies.
+	 */
+	private void estimateJerks(BodyStore bodies, Algorithm alg, double sec) {
+		int n = bodies.size();
+		boolean[] active = bodies.active();
+		boolean probe = false;
+		for (int i = 0; i < n; i++) {
+			active[i] = this.enabled[i]
+					&& !(i < this.lastRefs.length && this.lastRefs[i] == bodies.get(i) && this.lastSec > 0);
+			if (this.enabled[i] && !active[i]) {
+				this.jerk[i] = Math.hypot(this.accX[i] - this.lastAccX[i], this.accY[i] - this.lastAccY[i])
+						/ this.lastSec;
+			}
+			probe |= active[i];
+		}
+		if (probe) {
+			double[] x = bodies.posX();
+			double[] y = bodies.posY();
+			double[] x0 = x.clone();
+			double[] y0 = y.clone();
+			double dt = sec / (1 << MAX_BIN);
+			for (int i = 0; i < n; i++) {
+				x[i] += dt * bodies.velX()[i];
+				y[i] += dt * bodies.velY()[i];
+			}
+			this.computeForces(bodies, alg);
+			for (int i = 0; i < n; i++) {
+				if (active[i]) {
+					this.jerk[i] = Math.hypot(bodies.forceX()[i] / bodies.mass()[i] - this.accX[i],
+							bodies.forceY()[i] / bodies.mass()[i] - this.accY[i]) / dt;
+				}
+			}
+			System.arraycopy(x0, 0, x, 0, n);
+			System.arraycopy(y0, 0, y, 0, n);
+		}
+		System.arraycopy(this.enabled, 0, active, 0, n);
+	}
+
+	/*
+	 * Chooses the step of every body from its acceleration and its derivative,
+	 * the accelerations are then kept for the next update. The bodies without
+	 * forces get the whole update and no history. Returns the highest bin.
+	 */
+	private int assignBins(BodyStore bodies, double sec) {
+		int maxBin = 0;
+		for (int i = 0; i < bodies.size(); i++) {
+			int k = 0;
+			if (this.enabled[i]) {
+				double tau = this.getEta() * Math.hypot(this.accX[i], this.accY[i]) / this.jerk[i];
+				for (double dt = sec; dt > tau && k < MAX_BIN; dt /= 2) {
+					k++;
+				}
+			}
+			this.bin[i] = k;
+			maxBin = Math.max(maxBin, k);
+			this.lastRefs[i] = this.enabled[i] ? bodies.get(i) : null;
+			this.lastAccX[i] = this.accX[i];
+			this.lastAccY[i] = this.accY[i];
+		}
+		Arrays.fill(this.lastRefs, bodies.size(), this.lastRefs.length, null);
+		this.lastSec = sec;
+		return maxBin;
+	}
+
+	private void ensureCapacity(int n) {
+		if (this.bin != null && n <= this.bin.length) {
+			return;
+		}
+		int capacity = this.bin == null ? n : Math.max(n, this.bin.length * 2);
+		this.lastRefs = this.lastRefs == null ? new Body[capacity] : Arrays.copyOf(this.lastRefs, capacity);
+		this.lastAccX = this.lastAccX == null ? new double[capacity] : Arrays.copyOf(this.lastAccX, capacity);
+		this.lastAccY = this.lastAccY == null ? new double[capacity] : Arrays.copyOf(this.lastAccY, capacity);
+		this.accX = new double[capacity];
+		this.accY = new double[capacity];
+		this.jerk = new double[capacity];
+		this.bin = new int[capacity];
+		this.enabled = new boolean[capacity];
+	}
+}
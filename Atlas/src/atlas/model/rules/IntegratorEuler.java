@@ -0,0 +1,26 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+
+/**
+ * A specific integrator which uses the semi-implicit Euler method: the
+ * velocity is updated with the current force, then the position with the new
+ * velocity. First order, one force evaluation per step. It is the default
+ * integrator.
+ *
+ */
+public class IntegratorEuler extends Integrator {
+
+	private static final long serialVersionUID = 6062387124780950528L;
+
+	@Override
+	public void step(BodyStore bodies, Algorithm alg, double sec) {
+		alg.computeForces(bodies);
+		boolean[] attracting = bodies.attracting();
+		for (int i = 0; i < bodies.size(); i++) {
+			if (attracting[i]) {
+				bodies.updatePos(i, sec);
+			}
+		}
+	}
+}
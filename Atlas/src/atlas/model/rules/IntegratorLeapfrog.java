@@ -0,0 +1,23 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+
+/**
+ * A specific integrator which uses the drift-kick-drift leapfrog: half a
+ * drift, a full kick with the forces at the middle of the step, then the
+ * other half of the drift. Second order and symplectic, so the energy does
+ * not drift over long times. One force evaluation per step, as the Euler.
+ *
+ */
+public class IntegratorLeapfrog extends Integrator {
+
+	private static final long serialVersionUID = -1537806212264541870L;
+
+	@Override
+	public void step(BodyStore bodies, Algorithm alg, double sec) {
+		this.drift(bodies, sec / 2);
+		this.computeForces(bodies, alg);
+		this.kick(bodies, sec);
+		this.drift(bodies, sec / 2);
+	}
+}
@@ -0,0 +1,40 @@
+package atlas.model.rules;
+
+import atlas.model.BodyStore;
+
+/**
+ * A specific integrator which uses the 4th order Yoshida method: three
+ * leapfrog steps with tuned lengths (the middle one goes back in time), so
+ * that the errors cancel out. Fourth order and symplectic, it allows much
+ * larger steps than the leapfrog. Three force evaluations per step.
+ *
+ */
+public class IntegratorYoshida extends Integrator {
+
+	private static final long serialVersionUID = 8517925376154337291L;
+
+	private static final double CBRT2 = Math.cbrt(2);
+	private static final double W1 = 1 / (2 - CBRT2);
+	private static final double W0 = -CBRT2 / (2 - CBRT2);
+
+	/* Drift coefficients, they sum up to 1 */
+	private static final double C1 = W1 / 2;
+	private static final double C2 = (W0 + W1) / 2;
+	/* Kick coefficients, they sum up to 1 */
+	private static final double D1 = W1;
+	private static final double D2 = W0;
+
+	@Override
+	public void step(BodyStore bodies, Algorithm alg, double sec) {
+		this.drift(bodies, C1 * sec);
+		this.computeForces(bodies, alg);
+		this.kick(bodies, D1 * sec);
+		this.drift(bodies, C2 * sec);
+		this.computeForces(bodies, alg);
+		this.kick(bodies, D2 * sec);
+		this.drift(bodies, C2 * sec);
+		this.computeForces(bodies, alg);
+		this.kick(bodies, D1 * sec);
+		this.drift(bodies, C1 * sec);
+	}
+}
@@ -0,0 +1,79 @@
+package atlas.model.rules;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork/join task that applies an action to every index of a range, splitting
+ * the range in chunks that are executed by the pool's workers. The action must
+ * only write data that belongs to the index it is given.
+ */
+class ParallelRange extends RecursiveAction {
+
+	private static final long serialVersionUID = 5302146718911473826L;
+
+	/* Smallest range that is split */
+	private static final int CHUNK = 256;
+
+	private final int from;
+	private final int to;
+	private final IntConsumer action;
+
+	private ParallelRange(int from, int to, IntConsumer action) {
+		this.from = from;
+		this.to = to;
+		this.action = action;
+	}
+
+	@Override
+	protected void compute() {
+		if (this.to - this.from <= CHUNK) {
+			for (int i = this.from; i < this.to; i++) {
+				this.action.accept(i);
+			}
+		} else {
+			int mid = (this.from + this.to) >>> 1;
+			invokeAll(new ParallelRange(this.from, mid, this.action), new ParallelRange(mid, this.to, this.action));
+		}
+	}
+
+	/**
+	 * Applies the action to every index in [from, to), in parallel if the pool
+	 * is present and the range is big enough.
+	 * 
+	 * @param pool
+	 *            the pool to use, null to run on the calling thread
+	 * @param from
+	 *            first index, inclusive
+	 * @param to
+	 *            last index, exclusive
+	 * @param action
+	 *            the action to apply
+	 */
+	static void forEach(ForkJoinPool pool, int from, int to, IntConsumer action) {
+		if (pool == null || to - from <= CHUNK) {
+			for (int i = from; i < to; i++) {
+				action.accept(i);
+			}
+		} else if (ForkJoinTask.getPool() == pool) {
+			// already on a worker of the pool, it forks from here
+			new ParallelRange(from, to, action).invoke();
+		} else {
+			pool.invoke(new ParallelRange(from, to, action));
+		}
+	}
+
+	/**
+	 * The pool of the calling thread if it is a worker, so that the models run
+	 * on a pool (e.g. by a simulation host) do not spread on other threads;
+	 * the common pool otherwise.
+	 * 
+	 * @return the pool to run the parallel work of the calling thread on
+	 */
+	static ForkJoinPool current() {
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return pool != null ? pool : ForkJoinPool.commonPool();
+	}
+}
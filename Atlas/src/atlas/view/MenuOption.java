@@ -41,9 +41,24 @@ public class MenuOption extends MenuHidable {
     private CheckBox collisionOne = new CheckBox("Fragments");
     private CheckBox collisionTwo = new CheckBox("Absorb");
 
+    private CheckBox detectionGrid = new CheckBox("Grid detection");
+    private CheckBox detectionSweep = new CheckBox("Sweep and prune detection (mixed sizes)");
+    private CheckBox detectionContinuous = new CheckBox("Continuous detection (fast bodies)");
+
     private CheckBox nBodyOne = new CheckBox("Brute force - N^2 (most accurate)");
-    private CheckBox nBodyTwo = new CheckBox("Two body - N (no collision)");
+    private CheckBox nBodyTwo = new CheckBox("Two body - N (fastest)");
     private CheckBox nBodyThree = new CheckBox("BarnesHut Tree - NlogN (brand new*)");
+    private CheckBox nBodyFour = new CheckBox("Fast Multipole - N (huge simulations)");
+    private CheckBox nBodyFive = new CheckBox("Patched conics - N (centuries of orbits)");
+
+    private CheckBox accuracyFast = new CheckBox("Fast");
+    private CheckBox accuracyBalanced = new CheckBox("Balanced");
+    private CheckBox accuracyPrecise = new CheckBox("Precise");
+
+    private CheckBox integratorEuler = new CheckBox("Euler - 1st order (fastest step)");
+    private CheckBox integratorLeapfrog = new CheckBox("Leapfrog - 2nd order (stable orbits)");
+    private CheckBox integratorYoshida = new CheckBox("Yoshida - 4th order (largest steps)");
+    private CheckBox integratorBlockSteps = new CheckBox("Block steps - leapfrog (many moons)");
 
     private CheckBox fullScreen = new CheckBox("Full screen mode");
 
@@ -66,8 +81,13 @@ public class MenuOption extends MenuHidable {
         root.setSpacing(VGAP);
 
         root.getChildren().addAll(new Separator(), new Label("ADDITIONAL SETTINGS"), fullScreen, trail);
-        root.getChildren().addAll(new Separator(), new Label("Collision system: "), collisionOne, collisionTwo);
-        root.getChildren().addAll(new Separator(), new Label("N-Body algorithm: "), nBodyOne, nBodyTwo, nBodyThree);
+        root.getChildren().addAll(new Separator(), new Label("Collision system: "), collisionOne, collisionTwo,
+                detectionGrid, detectionSweep, detectionContinuous);
+        root.getChildren().addAll(new Separator(), new Label("N-Body algorithm: "), nBodyOne, nBodyTwo, nBodyThree,
+                nBodyFour, nBodyFive);
+        root.getChildren().addAll(new Label("BarnesHut accuracy: "), accuracyFast, accuracyBalanced, accuracyPrecise);
+        root.getChildren().addAll(new Separator(), new Label("Integrator: "), integratorEuler, integratorLeapfrog,
+                integratorYoshida, integratorBlockSteps);
 
         this.logo = new ImageView(SceneLoading.LOGO.getImage());
         logo.setPreserveRatio(true);
@@ -75,7 +95,10 @@ public class MenuOption extends MenuHidable {
         logo.setFitWidth(LOGO_WIDTH);
 
         collisionOne.setSelected(true);
+        detectionGrid.setSelected(true);
         nBodyThree.setSelected(true);
+        accuracyBalanced.setSelected(true);
+        integratorLeapfrog.setSelected(true);
 
         this.setupGrid();
         this.setActions();
@@ -149,30 +172,102 @@ public class MenuOption extends MenuHidable {
             collisionOne.setSelected(false);
             collisionTwo.setSelected(true);
         });
+        this.detectionGrid.setOnAction(e -> {
+            view.notifyObserver(SimEvent.DETECTION_GRID);
+            detectionGrid.setSelected(true);
+            detectionSweep.setSelected(false);
+        });
+        this.detectionSweep.setOnAction(e -> {
+            view.notifyObserver(SimEvent.DETECTION_SWEEP_AND_PRUNE);
+            detectionGrid.setSelected(false);
+            detectionSweep.setSelected(true);
+        });
+        this.detectionContinuous.setOnAction(e -> {
+            view.notifyObserver(SimEvent.TOGGLE_CONTINUOUS_DETECTION);
+        });
         this.nBodyOne.setOnAction(e -> {
             view.notifyObserver(SimEvent.NBODY_ONE);
-            collisionOne.setDisable(false);
-            collisionTwo.setDisable(false);
-            nBodyOne.setSelected(true);
-            nBodyTwo.setSelected(false);
-            nBodyThree.setSelected(false);
+            this.selectNBody(nBodyOne);
+            this.setAccuracyDisable(true);
         });
         this.nBodyTwo.setOnAction(e -> {
             view.notifyObserver(SimEvent.NBODY_TWO);
-            collisionOne.setDisable(true);
-            collisionTwo.setDisable(true);
-            nBodyOne.setSelected(false);
-            nBodyTwo.setSelected(true);
-            nBodyThree.setSelected(false);
+            this.selectNBody(nBodyTwo);
+            this.setAccuracyDisable(true);
         });
         this.nBodyThree.setOnAction(e -> {
             view.notifyObserver(SimEvent.NBODY_THREE);
-            collisionOne.setDisable(true);
-            collisionTwo.setDisable(true);
-            nBodyOne.setSelected(false);
-            nBodyTwo.setSelected(false);
-            nBodyThree.setSelected(true);
+            this.selectNBody(nBodyThree);
+            this.setAccuracyDisable(false);
+            this.selectAccuracy(accuracyBalanced);
+        });
+        this.nBodyFour.setOnAction(e -> {
+            view.notifyObserver(SimEvent.NBODY_FOUR);
+            this.selectNBody(nBodyFour);
+            this.setAccuracyDisable(true);
+        });
+        this.nBodyFive.setOnAction(e -> {
+            view.notifyObserver(SimEvent.NBODY_FIVE);
+            this.selectNBody(nBodyFive);
+            this.setAccuracyDisable(true);
         });
+        this.accuracyFast.setOnAction(e -> {
+            view.notifyObserver(SimEvent.NBODY_THREE_FAST);
+            this.selectAccuracy(accuracyFast);
+        });
+        this.accuracyBalanced.setOnAction(e -> {
+            view.notifyObserver(SimEvent.NBODY_THREE_BALANCED);
+            this.selectAccuracy(accuracyBalanced);
+        });
+        this.accuracyPrecise.setOnAction(e -> {
+            view.notifyObserver(SimEvent.NBODY_THREE_PRECISE);
+            this.selectAccuracy(accuracyPrecise);
+        });
+        this.integratorEuler.setOnAction(e -> {
+            view.notifyObserver(SimEvent.INTEGRATOR_EULER);
+            this.selectIntegrator(integratorEuler);
+        });
+        this.integratorLeapfrog.setOnAction(e -> {
+            view.notifyObserver(SimEvent.INTEGRATOR_LEAPFROG);
+            this.selectIntegrator(integratorLeapfrog);
+        });
+        this.integratorYoshida.setOnAction(e -> {
+            view.notifyObserver(SimEvent.INTEGRATOR_YOSHIDA);
+            this.selectIntegrator(integratorYoshida);
+        });
+        this.integratorBlockSteps.setOnAction(e -> {
+            view.notifyObserver(SimEvent.INTEGRATOR_BLOCK_STEPS);
+            this.selectIntegrator(integratorBlockSteps);
+        });
+    }
+
+    /**
+     * Selects only the given n-body algorithm.
+     */
+    private void selectNBody(CheckBox nBody) {
+        Arrays.asList(nBodyOne, nBodyTwo, nBodyThree, nBodyFour, nBodyFive).forEach(i -> i.setSelected(i == nBody));
+    }
+
+    /**
+     * Selects only the given BarnesHut accuracy.
+     */
+    private void selectAccuracy(CheckBox accuracy) {
+        Arrays.asList(accuracyFast, accuracyBalanced, accuracyPrecise).forEach(i -> i.setSelected(i == accuracy));
+    }
+
+    /**
+     * Selects only the given integrator.
+     */
+    private void selectIntegrator(CheckBox integrator) {
+        Arrays.asList(integratorEuler, integratorLeapfrog, integratorYoshida, integratorBlockSteps)
+                .forEach(i -> i.setSelected(i == integrator));
+    }
+
+    /**
+     * Enables or disables the BarnesHut accuracy options.
+     */
+    private void setAccuracyDisable(boolean disable) {
+        Arrays.asList(accuracyFast, accuracyBalanced, accuracyPrecise).forEach(i -> i.setDisable(disable));
     }
 
 }
@@ -1,8 +1,8 @@
 package atlas.view;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
@@ -11,6 +11,7 @@ import java.util.stream.Collectors;
 
 import atlas.model.Body;
 import atlas.model.BodyType;
+import atlas.model.FrameSnapshot;
 import atlas.utils.Pair;
 import atlas.utils.ResourceLoader;
 import javafx.beans.binding.DoubleBinding;
@@ -46,6 +47,7 @@ public class RenderScreen extends StackPane {
 	private Pane lTop = new Pane(); // the top layer -> labels
 	private Label fpsCounter = new Label();
 	private Label bodyCounter = new Label();
+	private Label rateCounter = new Label();
 
 	private Map<Long, Pair<Pair<ImageView, Label>, Color>> bMap = new HashMap<>();
 
@@ -82,6 +84,10 @@ public class RenderScreen extends StackPane {
 		bodyCounter.setTextFill(Color.MAGENTA);
 		bodyCounter.setFont(Font.font("Roboto", FontWeight.BOLD, 20));
 		bodyCounter.setTranslateY(25);
+		this.lTop.getChildren().add(rateCounter);
+		rateCounter.setTextFill(Color.MAGENTA);
+		rateCounter.setFont(Font.font("Roboto", FontWeight.BOLD, 20));
+		rateCounter.setTranslateY(50);
 
 		/* Resizable pane */
 		this.maxHeight(Double.MAX_VALUE);
@@ -111,7 +117,7 @@ public class RenderScreen extends StackPane {
 	/**
 	 * Draws the bodies to the screen with the relative image, name and trail.
 	 * 
-	 * @param bodies
+	 * @param frame
 	 *            the bodies to be rendered
 	 * @param scaleType
 	 *            the rendering mode (size of the bodie's image)
@@ -122,63 +128,68 @@ public class RenderScreen extends StackPane {
 	 *            offset from the center of the screen (in pixel)
 	 * @param fps
 	 *            frames per second
+	 * @param rate
+	 *            speed of the simulation over the one asked for, 0 if it is
+	 *            not running
 	 * @param disabledTrail
 	 *            list of body types to hide the trail
 	 */
-	public void render(List<Body> bodies, RenderScale scaleType, double scale, Pair<Double, Double> translate, int fps,
-			Set<BodyType> disabledTrail) {
+	public void render(FrameSnapshot frame, RenderScale scaleType, double scale, Pair<Double, Double> translate,
+			int fps, double rate, Set<BodyType> disabledTrail) {
 		/* Preliminary actions */
-		this.adjustScreen(scale, translate);
+		this.adjustScreen(frame, scale, translate);
 		this.clearScreen();
 		this.fpsCounter.setText("FPS: " + fps);
-		this.bodyCounter.setText("# bodies: " + bodies.size());
+		this.bodyCounter.setText("# bodies: " + frame.size());
+		this.rateCounter.setText(rate > 0 ? "Speed: " + Math.round(rate * 100) + "%" : "Speed: -");
 
 		this.secondChanceMap.replaceAll((k, v) -> Boolean.FALSE);
 
 		/* Drawing the new frame */
-		bodies.forEach(b -> {
-			ImageView img = this.getScaledBodyImage(b, scaleType, scale);
+		for (int i = 0; i < frame.size(); i++) {
+			long id = frame.getId(i);
+			ImageView img = this.getScaledBodyImage(frame, i, scaleType, scale);
 
 			// If not present, create new entry
-			if (!this.bMap.keySet().contains(b.getId())) {
-				Label lab = new Label(b.getName());
+			if (!this.bMap.keySet().contains(id)) {
+				Label lab = new Label(frame.getName(i));
 				lab.setTextFill(Color.WHITESMOKE);
-				bMap.put(b.getId(), new Pair<>(new Pair<>(img, lab), this.pickColor()));
-				secondChanceMap.put(b.getId(), true);
+				bMap.put(id, new Pair<>(new Pair<>(img, lab), this.pickColor()));
+				secondChanceMap.put(id, true);
 
 				lMid.getChildren().add(img);
 				lTop.getChildren().add(lab);
 
 				// Sets the actions
-				this.setLableOnClick(lab, b);
+				this.setLableOnClick(lab, frame.getBody(i));
 
 				// this.setLabelOnRelease(entry.getX().getY(), b);
 			}
 
-			Pair<Pair<ImageView, Label>, Color> entry = bMap.get(b.getId());
-			this.secondChanceMap.put(b.getId(), true);
+			Pair<Pair<ImageView, Label>, Color> entry = bMap.get(id);
+			this.secondChanceMap.put(id, true);
 
 			/* Draw the body's trail only if it's enabled */
-			if (!disabledTrail.contains(b.getType())) {
-				this.drawTrail(b, scale, entry.getY());
+			if (!disabledTrail.contains(frame.getType(i))) {
+				this.drawTrail(frame.getBody(i), scale, entry.getY());
 			}
 
 			/* updates the label name if it has been changed */
-			entry.getX().getY().setText(b.getName());
+			entry.getX().getY().setText(frame.getName(i));
 
-			if (b.getType() == BodyType.SATELLITE) {
-				entry.getX().getY().setVisible(b.getProperties().getRadius() * 2 * scale > MIN_SIZE);
+			if (frame.getType(i) == BodyType.SATELLITE) {
+				entry.getX().getY().setVisible(frame.getRadius(i) * 2 * scale > MIN_SIZE);
 			}
 
 			/*
 			 * Place the image centered to the body point. Labels are placed
 			 * next to the image
 			 */
-			entry.getX().getX().relocate(this.calcPosX(b.getPosX()) - entry.getX().getX().getFitWidth() / 2,
-					this.calcPosY(b.getPosY()) - entry.getX().getX().getFitHeight() / 2);
-			entry.getX().getY().relocate(this.calcPosX(b.getPosX() + b.getProperties().getRadius()),
-					this.calcPosY(b.getPosY()));
-		});
+			entry.getX().getX().relocate(this.calcPosX(frame.getPosX(i)) - entry.getX().getX().getFitWidth() / 2,
+					this.calcPosY(frame.getPosY(i)) - entry.getX().getX().getFitHeight() / 2);
+			entry.getX().getY().relocate(this.calcPosX(frame.getPosX(i) + frame.getRadius(i)),
+					this.calcPosY(frame.getPosY(i)));
+		}
 
 		// remove all non used bodies
 		this.secondChanceMap.entrySet().stream().filter(i -> !i.getValue()).forEach(i -> {
@@ -236,14 +247,15 @@ public class RenderScreen extends StackPane {
 	 */
 	private void drawTrail(Body b, double scale, Color color) {
 		int minPointsTodraw = 2;
-		if (b.getTrail().size() < minPointsTodraw) {
+		Collection<Pair<Double, Double>> trail = b.getTrail();
+		if (trail.size() < minPointsTodraw) {
 			return;
 		}
-		int arraySize = b.getTrail().size();
+		int arraySize = trail.size();
 		double[] pointsX = new double[arraySize];
 		double[] pointsY = new double[arraySize];
 		double[] points = new double[arraySize * 2];
-		Iterator<Pair<Double, Double>> it = b.getTrail().iterator();
+		Iterator<Pair<Double, Double>> it = trail.iterator();
 		int x = 0;
 		int y = 0;
 		int i = 0;
@@ -264,59 +276,65 @@ public class RenderScreen extends StackPane {
 	/**
 	 * It computes the image that should be drawn on the screen.
 	 * 
-	 * @param b
-	 *            the body
+	 * @param frame
+	 *            the bodies
+	 * @param i
+	 *            the index of the body in the frame
 	 * @param scaleType
 	 *            rendering scale mode
 	 * @param scale
 	 *            scale of the simulation
 	 * @return the image of the body, properly sized.
 	 */
-	private ImageView getScaledBodyImage(Body b, RenderScale scaleType, double scale) {
+	private ImageView getScaledBodyImage(FrameSnapshot frame, int i, RenderScale scaleType, double scale) {
 		/* Getting or loading the image */
 		ImageView img = null;
+		String path = frame.getBody(i).getImagePath();
 		try {
-			if (bMap.containsKey(b.getId())) {
-				img = bMap.get(b.getId()).getX().getX();
+			if (bMap.containsKey(frame.getId(i))) {
+				img = bMap.get(frame.getId(i)).getX().getX();
 			} else {
-				img = new ImageView(new Image(ResourceLoader.loadAsStream(b.getImagePath())));
+				img = new ImageView(new Image(ResourceLoader.loadAsStream(path)));
 			}
 		} catch (IllegalArgumentException ie) {
-			throw new IllegalStateException("body image path can't be found : " + b.getImagePath());
+			throw new IllegalStateException("body image path can't be found : " + path);
 		} 
 
 		/* Scaling to appropriate scale */
 		double diamScaled = MIN_IMAGE_SIZE;
 		switch (scaleType) {
 		case REAL:
-			diamScaled = b.getProperties().getRadius() * 2 * scale;
+			diamScaled = frame.getRadius(i) * 2 * scale;
 			break;
 
 		default:
-			diamScaled = scaleType.getSize(b.getType());
+			diamScaled = scaleType.getSize(frame.getType(i));
 			break;
 		}
 
 		img.setFitHeight(diamScaled >= MIN_IMAGE_SIZE ? diamScaled : MIN_IMAGE_SIZE);
 		img.setFitWidth(diamScaled >= MIN_IMAGE_SIZE ? diamScaled : MIN_IMAGE_SIZE);
 		img.setPreserveRatio(true);
-		img.setRotate(b.getProperties().getRotationAngle());
+		img.setRotate(frame.getRotationAngle(i));
 
 		return img;
 	}
 
 	/**
-	 * Updates scale and translate according to changes.
+	 * Updates scale and translate according to changes. A locked camera
+	 * follows the selected body as it is in the frame.
 	 * 
+	 * @param frame
+	 *            the bodies
 	 * @param scale
 	 *            scale of the simulation
 	 * @param translate
 	 *            offset from the center of the screen
 	 */
-	private void adjustScreen(double scale, Pair<Double, Double> translate) {
-		if (view.isCameraLocked() && view.getSelectedBody().isPresent()) {
-			this.currentTranlate = new Pair<>(view.getSelectedBody().get().getPosX() * -scale,
-					view.getSelectedBody().get().getPosY() * scale);
+	private void adjustScreen(FrameSnapshot frame, double scale, Pair<Double, Double> translate) {
+		int selected = view.getSelectedBody().map(b -> frame.indexOf(b.getId())).orElse(-1);
+		if (view.isCameraLocked() && selected >= 0) {
+			this.currentTranlate = new Pair<>(frame.getPosX(selected) * -scale, frame.getPosY(selected) * scale);
 			this.currentScale = scale;
 		} else if (this.currentScale != scale || !translate.equals(currentTranlate)) {
 			this.currentScale = scale;
@@ -1,10 +1,9 @@
 package atlas.view;
 
-import java.util.List;
 import java.util.Set;
 
-import atlas.model.Body;
 import atlas.model.BodyType;
+import atlas.model.FrameSnapshot;
 import atlas.utils.Pair;
 import atlas.utils.ResourceLoader;
 import javafx.scene.Scene;
@@ -131,25 +130,25 @@ public class SceneMain extends Scene {
 	/**
 	 * Draw the bodies by delegating the task to the render screen.
 	 * 
-	 * @param bodies
-	 *            the bodies to be drawn
+	 * @param frame
+	 *            the bodies to be drawn and the time of the simulation
 	 * @param scale
 	 *            scale of the simulation
 	 * @param translate
 	 *            offset from the center of the screen
-	 * @param time
-	 *            time of the simulation
 	 * @param fps
 	 *            frames per second
+	 * @param rate
+	 *            speed of the simulation over the one asked for
 	 */
-	protected void draw(List<Body> bodies, double scale, Pair<Double, Double> translate, String time, int fps) {
+	protected void draw(FrameSnapshot frame, double scale, Pair<Double, Double> translate, int fps, double rate) {
 		RenderScale scaleType = this.cruise.viewMenu.getSelectedScale();
 		Set<BodyType> disabledTrail = this.cruise.viewMenu.getDisableTrailTypes();
 
-		this.cruise.setTime(time);
+		this.cruise.setTime(frame.getTime());
 		if (this.infoMenu.isShown()) {
 			this.infoMenu.update(ViewImpl.getView().getSelectedBody());
 		}
-		this.renderPanel.render(bodies, scaleType, scale, translate, fps, disabledTrail);
+		this.renderPanel.render(frame, scaleType, scale, translate, fps, rate, disabledTrail);
 	}
 }
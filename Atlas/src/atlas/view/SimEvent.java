@@ -32,6 +32,10 @@ public enum SimEvent {
     KEYBOARD_6, KEYBOARD_7, KEYBOARD_8, KEYBOARD_9,
 
     COLLISION_ONE, COLLISION_TWO,
+    DETECTION_GRID, DETECTION_SWEEP_AND_PRUNE, TOGGLE_CONTINUOUS_DETECTION,
     NBODY_ONE, NBODY_TWO, NBODY_THREE,
+    NBODY_THREE_FAST, NBODY_THREE_BALANCED, NBODY_THREE_PRECISE,
+    NBODY_FOUR, NBODY_FIVE,
+    INTEGRATOR_EULER, INTEGRATOR_LEAPFROG, INTEGRATOR_YOSHIDA, INTEGRATOR_BLOCK_STEPS,
     TOGGLE_TRAILS
 }
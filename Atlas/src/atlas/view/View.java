@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Optional;
 
 import atlas.model.Body;
+import atlas.model.FrameSnapshot;
 import atlas.utils.Pair;
 import atlas.utils.Units;
 
@@ -19,16 +20,25 @@ import atlas.utils.Units;
 public interface View {
 
 	/**
-	 * Renders the bodies to the screen.
+	 * Renders the bodies to the screen. Only the latest frame is drawn, the
+	 * ones published before it was drawn are skipped. The view may draw more
+	 * frames than it is given, moving the bodies from a frame to the next.
 	 * 
-	 * @param b
-	 *            the bodies
-	 * @param time
-	 *            time of the simulation
-	 * @param fps
-	 *            frames per second
+	 * @param frame
+	 *            the state of the bodies and the time of the simulation
+	 * @param rate
+	 *            speed of the simulation over the one asked for, 0 if it is
+	 *            not running
+	 */
+	public void render(FrameSnapshot frame, double rate);
+
+	/**
+	 * Tells whether the last frame passed to render is still waiting to be
+	 * taken, that is the view has fallen behind the simulation.
+	 * 
+	 * @return true if the view has not started to draw the last frame
 	 */
-	public void render(List<Body> b, String time, int fps);
+	public boolean isFramePending();
 
 	/**
 	 * Notifies the observer of the new event.
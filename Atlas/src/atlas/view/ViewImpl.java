@@ -7,11 +7,15 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import atlas.controller.Controller;
 import atlas.model.Body;
+import atlas.model.FrameSnapshot;
 import atlas.utils.Pair;
 import atlas.utils.Units;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
@@ -25,6 +29,9 @@ public class ViewImpl implements View {
 
 	private static View view;
 
+	/* Longest time the bodies take to move from a frame to the next, in ns */
+	private static final long MAX_INTERPOLATION = TimeUnit.MILLISECONDS.toNanos(100);
+
 	// relation between the real size of the solar system and its size on the
 	// screen
 	private double scale;
@@ -34,6 +41,24 @@ public class ViewImpl implements View {
 	private SceneMain mainScene;
 	private SceneLoading loadingScene;
 
+	// latest frame published by the simulation, null once taken
+	private final AtomicReference<FrameSnapshot> nextFrame = new AtomicReference<>();
+	private volatile double rate;
+	// the two last frames taken, the bodies are drawn between them
+	private FrameSnapshot previousFrame;
+	private FrameSnapshot currentFrame;
+	private boolean interpolating;
+	// frames drawn in the last second
+	private int drawn;
+	private int fps;
+	private long fpsStart;
+	private final AnimationTimer animation = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			drawFrame();
+		}
+	};
+
 	private Optional<Body> selectedBody = Optional.empty();
 	private boolean lockedCamera = false;
 	private Optional<Pair<Double, Double>> mousePos = Optional.empty();
@@ -64,18 +89,66 @@ public class ViewImpl implements View {
 	}
 
 	@Override
-	public void render(List<Body> b, String time, int fps) {
+	public void render(FrameSnapshot frame, double rate) {
 		if (mainScene != null) {
-			Platform.runLater(() -> {
-
-				synchronized (b) {
-					mainScene.draw(b, scale, translate, time, fps);
-				}
-				if (!isMainScene()) {
-					this.switchToMainScene();
-				}
-			});
+			this.rate = rate;
+			/*
+			 * A frame still waiting to be taken is replaced by the new one. The
+			 * animation stops when it has nothing left to draw, so it is
+			 * started again when there is.
+			 */
+			if (this.nextFrame.getAndSet(frame) == null) {
+				Platform.runLater(this.animation::start);
+			}
+		}
+	}
+
+	/*
+	 * Draws a frame at every pulse of the screen. While the simulation runs,
+	 * the bodies move from the previous frame to the current one in the time
+	 * between the two, one frame late: the simulation can be updated less
+	 * often than the screen. The frames of a stopped simulation are drawn as
+	 * they are.
+	 */
+	private void drawFrame() {
+		long now = System.nanoTime();
+		FrameSnapshot next = this.nextFrame.getAndSet(null);
+		if (next != null) {
+			this.previousFrame = this.currentFrame;
+			this.currentFrame = next;
+			this.interpolating = this.rate > 0 && this.previousFrame != null;
+		}
+		if (this.currentFrame == null) {
+			this.animation.stop();
+			return;
 		}
+		double alpha = 1;
+		if (this.interpolating) {
+			long gap = Math.min(this.currentFrame.getCreated() - this.previousFrame.getCreated(), MAX_INTERPOLATION);
+			alpha = gap > 0 ? Math.min(1, (double) (now - this.currentFrame.getCreated()) / gap) : 1;
+			this.interpolating = alpha < 1;
+		}
+		FrameSnapshot frame = alpha < 1 ? this.currentFrame.interpolate(this.previousFrame, alpha)
+				: this.currentFrame;
+
+		this.drawn++;
+		if (now - this.fpsStart >= TimeUnit.SECONDS.toNanos(1)) {
+			this.fps = (int) (this.drawn * TimeUnit.SECONDS.toNanos(1) / (now - this.fpsStart));
+			this.drawn = 0;
+			this.fpsStart = now;
+		}
+		mainScene.draw(frame, scale, translate, this.fps, this.rate);
+		if (!isMainScene()) {
+			this.switchToMainScene();
+		}
+		if (!this.interpolating && this.nextFrame.get() == null) {
+			this.animation.stop();
+		}
+	}
+
+	@Override
+	public boolean isFramePending() {
+		return this.nextFrame.get() != null;
 	}
 
 	@Override